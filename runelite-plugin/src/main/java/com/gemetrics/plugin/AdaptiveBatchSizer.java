@@ -0,0 +1,124 @@
+package com.gemetrics.plugin;
+
+/**
+ * AIMD controller for upload batch size.
+ *
+ * Each fast, successful upload grows the batch by a fixed step (additive increase);
+ * a 429, a 5xx or a slow reply halves it (multiplicative decrease). The payload byte
+ * budget moves the same way, so unusually large trades cannot push a batch past what
+ * the server handles comfortably.
+ *
+ * The batch ceiling is the largest batch the server accepts. It can be moved with
+ * {@link #setMaxBatchSize} when the server says it takes more (or less).
+ */
+public class AdaptiveBatchSizer
+{
+	private static final int BYTES_STEP = 4 * 1024;
+
+	private final int minBatchSize;
+	private int maxBatchSize;
+	private int batchStep;
+	private final int minPayloadBytes;
+	private final int maxPayloadBytes;
+	private final long targetLatencyMillis;
+
+	private int batchSize;
+	private int payloadBytes;
+	private long lastLatencyMillis;
+
+	public AdaptiveBatchSizer(int minBatchSize, int initialBatchSize, int maxBatchSize,
+		int minPayloadBytes, int maxPayloadBytes, long targetLatencyMillis)
+	{
+		if (minBatchSize < 1 || initialBatchSize < minBatchSize || maxBatchSize < initialBatchSize)
+		{
+			throw new IllegalArgumentException("Batch sizes must satisfy 1 <= min <= initial <= max");
+		}
+
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = maxBatchSize;
+		this.batchStep = Math.max(1, maxBatchSize / 10);
+		this.minPayloadBytes = minPayloadBytes;
+		this.maxPayloadBytes = maxPayloadBytes;
+		this.targetLatencyMillis = targetLatencyMillis;
+		this.batchSize = initialBatchSize;
+		this.payloadBytes = Math.max(minPayloadBytes, Math.min(maxPayloadBytes, maxPayloadBytes / 2));
+	}
+
+	/**
+	 * Moves the batch ceiling, e.g. to a limit advertised by the server. Never goes below
+	 * the minimum batch size; a current batch above the new ceiling is cut down to it.
+	 */
+	public synchronized void setMaxBatchSize(int maxBatchSize)
+	{
+		this.maxBatchSize = Math.max(minBatchSize, maxBatchSize);
+		this.batchStep = Math.max(1, this.maxBatchSize / 10);
+		this.batchSize = Math.min(batchSize, this.maxBatchSize);
+	}
+
+	/**
+	 * A batch was accepted. Grows the limits while replies stay under the target latency
+	 * and shrinks them once replies become slow.
+	 */
+	public synchronized void onSuccess(long latencyMillis)
+	{
+		lastLatencyMillis = latencyMillis;
+
+		if (latencyMillis <= targetLatencyMillis)
+		{
+			batchSize = Math.min(maxBatchSize, batchSize + batchStep);
+			payloadBytes = Math.min(maxPayloadBytes, payloadBytes + BYTES_STEP);
+		}
+		else if (latencyMillis > 2 * targetLatencyMillis)
+		{
+			decrease();
+		}
+	}
+
+	/**
+	 * The server asked us to slow down (429), failed (5xx) or timed out.
+	 */
+	public synchronized void onBackpressure()
+	{
+		decrease();
+	}
+
+	private void decrease()
+	{
+		batchSize = Math.max(minBatchSize, batchSize / 2);
+		payloadBytes = Math.max(minPayloadBytes, payloadBytes / 2);
+	}
+
+	/**
+	 * Number of trades to put in the next batch, given the average encoded size of a trade.
+	 */
+	public synchronized int nextBatchSize(int averageTradeBytes)
+	{
+		if (averageTradeBytes <= 0)
+		{
+			return batchSize;
+		}
+
+		int byBytes = Math.max(minBatchSize, payloadBytes / averageTradeBytes);
+		return Math.min(batchSize, byBytes);
+	}
+
+	public synchronized int getBatchSize()
+	{
+		return batchSize;
+	}
+
+	public synchronized int getMaxBatchSize()
+	{
+		return maxBatchSize;
+	}
+
+	public synchronized int getPayloadBytes()
+	{
+		return payloadBytes;
+	}
+
+	public synchronized long getLastLatencyMillis()
+	{
+		return lastLatencyMillis;
+	}
+}
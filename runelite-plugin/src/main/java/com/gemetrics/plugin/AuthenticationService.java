@@ -4,13 +4,11 @@ import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.config.ConfigManager;
 import okhttp3.*;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.time.Instant;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Base64;
 import java.util.concurrent.locks.ReentrantLock;
@@ -31,7 +29,9 @@ public class AuthenticationService
 	@Inject
 	private NotificationService notificationService;
 
-	private final OkHttpClient httpClient;
+	@Inject
+	private GeMetricsHttpClient httpClient;
+
 	private final Gson gson;
 	private final ReentrantLock authLock;
 	private final ScheduledExecutorService executorService;
@@ -40,12 +40,13 @@ public class AuthenticationService
 	private String refreshToken;
 	private Instant tokenExpiryTime;
 	private boolean isRefreshing;
+	// Told whenever a usable token appears, so work paused while logged out can resume
+	private volatile Runnable authenticatedListener;
 	private static final long TOKEN_REFRESH_BUFFER_MINUTES = 5;
 
 	public AuthenticationService()
 	{
-		this.httpClient = new OkHttpClient();
-		this.gson = new GsonBuilder().create();
+		this.gson = GeMetricsGson.INSTANCE;
 		this.authLock = new ReentrantLock();
 		this.executorService = Executors.newSingleThreadScheduledExecutor(r -> {
 			Thread thread = new Thread(r, "GeMetrics-Auth");
@@ -72,10 +73,7 @@ public class AuthenticationService
 
 		// tRPC HTTP format: POST /trpc/{router}.{procedure}
 		// Body format: { "input": {...} }
-		Map<String, Object> trpcRequest = new HashMap<>();
-		trpcRequest.put("input", request);
-		
-		String json = gson.toJson(trpcRequest);
+		String json = TrpcEnvelope.toJson(gson, request, LoginRequest.class);
 		
 		RequestBody body = RequestBody.create(
 			json,
@@ -88,18 +86,13 @@ public class AuthenticationService
 			.addHeader("Content-Type", "application/json")
 			.build();
 
-		try (Response response = httpClient.newCall(httpRequest).execute())
+		try (Response response = httpClient.getClient().newCall(httpRequest).execute())
 		{
 			if (response.isSuccessful())
 			{
 				String responseBody = response.body().string();
 				// tRPC response format: { "result": { "data": {...} } }
-				// Parse the nested structure
-				Map<String, Object> trpcResponse = gson.fromJson(responseBody, Map.class);
-				Map<String, Object> result = (Map<String, Object>) trpcResponse.get("result");
-				Map<String, Object> data = (Map<String, Object>) result.get("data");
-				
-				LoginResponse loginResponse = gson.fromJson(gson.toJson(data), LoginResponse.class);
+				LoginResponse loginResponse = TrpcEnvelope.readData(gson, responseBody, LoginResponse.class);
 				
 				this.accessToken = loginResponse.getAccessToken();
 				this.refreshToken = loginResponse.getRefreshToken();
@@ -115,6 +108,7 @@ public class AuthenticationService
 				{
 					notificationService.showLoginSuccess(email);
 				}
+				notifyAuthenticated();
 				
 				return true;
 			}
@@ -136,10 +130,7 @@ public class AuthenticationService
 		request.setName(name);
 
 		// tRPC HTTP format
-		Map<String, Object> trpcRequest = new HashMap<>();
-		trpcRequest.put("input", request);
-		
-		String json = gson.toJson(trpcRequest);
+		String json = TrpcEnvelope.toJson(gson, request, RegisterRequest.class);
 		
 		RequestBody body = RequestBody.create(
 			json,
@@ -152,7 +143,7 @@ public class AuthenticationService
 			.addHeader("Content-Type", "application/json")
 			.build();
 
-		try (Response response = httpClient.newCall(httpRequest).execute())
+		try (Response response = httpClient.getClient().newCall(httpRequest).execute())
 		{
 			if (response.isSuccessful())
 			{
@@ -178,6 +169,24 @@ public class AuthenticationService
 		return getAccessToken() != null && !getAccessToken().isEmpty();
 	}
 
+	/**
+	 * Sets the callback run after a successful login or token refresh. Replaces any
+	 * previous one.
+	 */
+	public void setAuthenticatedListener(Runnable listener)
+	{
+		this.authenticatedListener = listener;
+	}
+
+	private void notifyAuthenticated()
+	{
+		Runnable listener = authenticatedListener;
+		if (listener != null)
+		{
+			listener.run();
+		}
+	}
+
 	public void logout()
 	{
 		authLock.lock();
@@ -320,10 +329,7 @@ public class AuthenticationService
 			RefreshTokenRequest request = new RefreshTokenRequest();
 			request.setRefreshToken(refreshToken);
 			
-			Map<String, Object> trpcRequest = new HashMap<>();
-			trpcRequest.put("input", request);
-			
-			String json = gson.toJson(trpcRequest);
+			String json = TrpcEnvelope.toJson(gson, request, RefreshTokenRequest.class);
 			RequestBody body = RequestBody.create(json, MediaType.parse("application/json"));
 			
 			Request httpRequest = new Request.Builder()
@@ -332,22 +338,19 @@ public class AuthenticationService
 				.addHeader("Content-Type", "application/json")
 				.build();
 			
-			try (Response response = httpClient.newCall(httpRequest).execute())
+			try (Response response = httpClient.getClient().newCall(httpRequest).execute())
 			{
 				if (response.isSuccessful())
 				{
 					String responseBody = response.body().string();
-					Map<String, Object> trpcResponse = gson.fromJson(responseBody, Map.class);
-					Map<String, Object> result = (Map<String, Object>) trpcResponse.get("result");
-					Map<String, Object> data = (Map<String, Object>) result.get("data");
-					
-					RefreshTokenResponse refreshResponse = gson.fromJson(gson.toJson(data), RefreshTokenResponse.class);
+					RefreshTokenResponse refreshResponse = TrpcEnvelope.readData(gson, responseBody, RefreshTokenResponse.class);
 					
 					this.accessToken = refreshResponse.getAccessToken();
 					parseTokenExpiry(this.accessToken);
 					saveTokens();
 					
 					log.info("Token refreshed successfully");
+					notifyAuthenticated();
 					return true;
 				}
 				else
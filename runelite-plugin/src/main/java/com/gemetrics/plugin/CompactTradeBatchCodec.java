@@ -0,0 +1,253 @@
+package com.gemetrics.plugin;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary-encoded alternative to the plain JSON trade batch.
+ *
+ * <pre>
+ * {
+ *   "v": 1,
+ *   "runeliteClientId": "...",
+ *   "osrsUsername": "...",
+ *   "baseTime": 1700000000000,
+ *   "items": [[554, "Fire rune"], ...],
+ *   "trades": [[eventId, itemIndex, offerType, price, quantity, filledQuantity, status, timeDelta], ...]
+ * }
+ * </pre>
+ *
+ * Item names are sent once per batch, offer type and status are small ints, timestamps are
+ * millisecond offsets from baseTime and remainingQuantity is left out because it is
+ * quantity - filledQuantity.
+ *
+ * Only used once the server has advertised support through {@link #SUPPORTED_HEADER};
+ * the request then carries {@link #ENCODING_HEADER}.
+ */
+public final class CompactTradeBatchCodec
+{
+	public static final String ENCODING_HEADER = "X-GeMetrics-Batch-Encoding";
+	public static final String SUPPORTED_HEADER = "X-GeMetrics-Batch-Encodings";
+	public static final String ENCODING_NAME = "compact-v1";
+
+	private static final int VERSION = 1;
+	// Wire indexes; never reorder
+	private static final List<TradeEvent.OfferType> OFFER_TYPES = Arrays.asList(
+		TradeEvent.OfferType.BUY, TradeEvent.OfferType.SELL);
+	private static final List<TradeEvent.Status> STATUSES = Arrays.asList(
+		TradeEvent.Status.PENDING, TradeEvent.Status.COMPLETED, TradeEvent.Status.CANCELED);
+
+	private CompactTradeBatchCodec()
+	{
+	}
+
+	/**
+	 * Whether a server's advertised encodings header includes this format.
+	 */
+	public static boolean isSupportedBy(String advertisedEncodings)
+	{
+		if (advertisedEncodings == null)
+		{
+			return false;
+		}
+
+		for (String encoding : advertisedEncodings.split(","))
+		{
+			if (encoding.trim().equalsIgnoreCase(ENCODING_NAME))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether every trade in the batch can be represented. Batches with unknown offer
+	 * types, statuses, an inconsistent remainingQuantity or a trade without a timestamp
+	 * must be sent as plain JSON, which leaves a missing timestamp out instead of sending 0.
+	 */
+	public static boolean canEncode(TradeBatchRequest request)
+	{
+		for (TradeEvent trade : request.getTrades())
+		{
+			if (trade.getTimestamp() <= 0
+				|| trade.getRemainingQuantity() != trade.getQuantity() - trade.getFilledQuantity()
+				|| !OFFER_TYPES.contains(trade.getOfferType())
+				|| !STATUSES.contains(trade.getStatus()))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public static void encode(TradeBatchRequest request, JsonWriter writer) throws IOException
+	{
+		List<TradeEvent> trades = request.getTrades();
+
+		long baseTime = Long.MAX_VALUE;
+		long[] times = new long[trades.size()];
+		for (int i = 0; i < trades.size(); i++)
+		{
+			times[i] = trades.get(i).getTimestamp();
+			baseTime = Math.min(baseTime, times[i]);
+		}
+
+		writer.beginObject();
+		writer.name("v").value(VERSION);
+		writer.name("runeliteClientId").value(request.getRuneliteClientId());
+		if (request.getOsrsUsername() != null)
+		{
+			writer.name("osrsUsername").value(request.getOsrsUsername());
+		}
+		writer.name("baseTime").value(trades.isEmpty() ? 0 : baseTime);
+
+		// Dictionary of distinct (itemId, itemName) pairs in first-seen order
+		Map<Integer, Integer> itemIndex = new HashMap<>();
+		writer.name("items").beginArray();
+		for (TradeEvent trade : trades)
+		{
+			if (!itemIndex.containsKey(trade.getItemId()))
+			{
+				itemIndex.put(trade.getItemId(), itemIndex.size());
+				writer.beginArray().value(trade.getItemId()).value(trade.getItemName()).endArray();
+			}
+		}
+		writer.endArray();
+
+		writer.name("trades").beginArray();
+		for (int i = 0; i < trades.size(); i++)
+		{
+			TradeEvent trade = trades.get(i);
+			writer.beginArray()
+				.value(trade.getRuneliteEventId())
+				.value(itemIndex.get(trade.getItemId()))
+				.value(OFFER_TYPES.indexOf(trade.getOfferType()))
+				.value(trade.getPrice())
+				.value(trade.getQuantity())
+				.value(trade.getFilledQuantity())
+				.value(STATUSES.indexOf(trade.getStatus()))
+				.value(times[i] - baseTime)
+				.endArray();
+		}
+		writer.endArray();
+		writer.endObject();
+	}
+
+	public static TradeBatchRequest decode(JsonReader reader) throws IOException
+	{
+		TradeBatchRequest request = new TradeBatchRequest();
+		List<Integer> itemIds = new ArrayList<>();
+		List<String> itemNames = new ArrayList<>();
+		List<Object[]> rows = new ArrayList<>();
+		long baseTime = 0;
+
+		reader.beginObject();
+		while (reader.hasNext())
+		{
+			String name = reader.nextName();
+			switch (name)
+			{
+				case "v":
+					int version = reader.nextInt();
+					if (version != VERSION)
+					{
+						throw new IOException("Unsupported compact batch version: " + version);
+					}
+					break;
+				case "runeliteClientId":
+					request.setRuneliteClientId(reader.nextString());
+					break;
+				case "osrsUsername":
+					if (reader.peek() == JsonToken.NULL)
+					{
+						reader.nextNull();
+					}
+					else
+					{
+						request.setOsrsUsername(reader.nextString());
+					}
+					break;
+				case "baseTime":
+					baseTime = reader.nextLong();
+					break;
+				case "items":
+					reader.beginArray();
+					while (reader.hasNext())
+					{
+						reader.beginArray();
+						itemIds.add(reader.nextInt());
+						// The plain encoding allows a trade without a name, so this does too
+						if (reader.peek() == JsonToken.NULL)
+						{
+							reader.nextNull();
+							itemNames.add(null);
+						}
+						else
+						{
+							itemNames.add(reader.nextString());
+						}
+						reader.endArray();
+					}
+					reader.endArray();
+					break;
+				case "trades":
+					reader.beginArray();
+					while (reader.hasNext())
+					{
+						reader.beginArray();
+						rows.add(new Object[]{
+							reader.nextString(),
+							reader.nextInt(),
+							reader.nextInt(),
+							reader.nextInt(),
+							reader.nextInt(),
+							reader.nextInt(),
+							reader.nextInt(),
+							reader.nextLong()
+						});
+						reader.endArray();
+					}
+					reader.endArray();
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+
+		// Rows are resolved after the whole object is read so field order does not matter
+		List<TradeEvent> trades = new ArrayList<>(rows.size());
+		for (Object[] row : rows)
+		{
+			int item = (Integer) row[1];
+			int quantity = (Integer) row[4];
+			int filled = (Integer) row[5];
+
+			TradeEvent trade = TradeEvent.builder()
+				.runeliteEventId((String) row[0])
+				.itemId(itemIds.get(item))
+				.itemName(itemNames.get(item))
+				.offerType(OFFER_TYPES.get((Integer) row[2]))
+				.price((Integer) row[3])
+				.quantity(quantity)
+				.filledQuantity(filled)
+				.remainingQuantity(quantity - filled)
+				.status(STATUSES.get((Integer) row[6]))
+				.timestamp(baseTime + (Long) row[7])
+				.build();
+			trades.add(trade);
+		}
+		request.setTrades(trades);
+		return request;
+	}
+}
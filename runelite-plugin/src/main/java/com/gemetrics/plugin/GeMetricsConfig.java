@@ -3,6 +3,7 @@ package com.gemetrics.plugin;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.Range;
 
 @ConfigGroup("gemetrics")
 public interface GeMetricsConfig extends Config
@@ -40,13 +41,61 @@ public interface GeMetricsConfig extends Config
 	@ConfigItem(
 		keyName = "syncInterval",
 		name = "Sync Interval (seconds)",
-		description = "How often to sync trades (in seconds)"
+		description = "Longest time a new trade waits before it is synced (in seconds)"
 	)
 	default int syncInterval()
 	{
 		return 30;
 	}
 
+	@Range(
+		min = 1,
+		max = 8
+	)
+	@ConfigItem(
+		keyName = "maxInFlightRequests",
+		name = "Parallel Uploads",
+		description = "How many upload requests may run at once while catching up on a backlog"
+	)
+	default int maxInFlightRequests()
+	{
+		return 2;
+	}
+
+	@ConfigItem(
+		keyName = "compressUploads",
+		name = "Compress Uploads",
+		description = "Gzip-compress trade uploads to reduce bandwidth"
+	)
+	default boolean compressUploads()
+	{
+		return false;
+	}
+
+	@Range(
+		min = 1,
+		max = 3650
+	)
+	@ConfigItem(
+		keyName = "historyRetentionDays",
+		name = "History Retention (days)",
+		description = "How many days of local trade history to keep. History is only recorded with SQLite upload queue storage."
+	)
+	default int historyRetentionDays()
+	{
+		return 90;
+	}
+
+	@ConfigItem(
+		keyName = "tradeStoreBackend",
+		name = "Upload Queue Storage",
+		description = "Where trades wait for upload. The journal has cheaper writes, but local trade history is disabled while it is selected: new trades are not recorded in it. Takes effect after a restart."
+	)
+	default TradeStoreBackend tradeStoreBackend()
+	{
+		return TradeStoreBackend.SQLITE;
+	}
+
 	@ConfigItem(
 		keyName = "runeliteClientId",
 		name = "",
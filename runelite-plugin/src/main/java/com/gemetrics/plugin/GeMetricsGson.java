@@ -0,0 +1,24 @@
+package com.gemetrics.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * The one Gson instance shared by the services and stores.
+ *
+ * Gson is thread-safe and caches an adapter per type, so one instance avoids resolving the
+ * same adapters in every service. {@link TradeEvent} and {@link TradeBatchRequest} carry
+ * their hand-written adapters through {@code @JsonAdapter}; they are registered here as
+ * well so the lookup never goes near the reflective factory.
+ */
+public final class GeMetricsGson
+{
+	public static final Gson INSTANCE = new GsonBuilder()
+		.registerTypeAdapter(TradeEvent.class, new TradeEventTypeAdapter().nullSafe())
+		.registerTypeAdapter(TradeBatchRequest.class, new TradeBatchRequestTypeAdapter().nullSafe())
+		.create();
+
+	private GeMetricsGson()
+	{
+	}
+}
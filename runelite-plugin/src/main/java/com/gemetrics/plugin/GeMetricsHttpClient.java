@@ -0,0 +1,104 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP client shared by every GE Metrics service.
+ *
+ * Derived from RuneLite's client, so it shares RuneLite's connection pool and TLS
+ * session cache, with its own dispatcher, HTTP/2 preferred and explicit timeouts.
+ * {@link #preconnect} opens the API connection ahead of the first sync, and
+ * {@link #getMetrics()} shows how often calls found a pooled connection.
+ */
+@Slf4j
+@Singleton
+public class GeMetricsHttpClient
+{
+	// Parallel uploads are capped at this, see TradeSyncService
+	static final int MAX_REQUESTS_PER_HOST = 8;
+	private static final long CONNECT_TIMEOUT_SECONDS = 10;
+	private static final long READ_TIMEOUT_SECONDS = 30;
+	private static final long WRITE_TIMEOUT_SECONDS = 30;
+	// Well inside the outbox lease, so a hung upload fails before its trades are leased again
+	private static final long CALL_TIMEOUT_SECONDS = 60;
+
+	private final OkHttpClient client;
+	private final HttpConnectionMetrics metrics = new HttpConnectionMetrics();
+
+	@Inject
+	public GeMetricsHttpClient(OkHttpClient runeliteClient)
+	{
+		Dispatcher dispatcher = new Dispatcher();
+		dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+		this.client = runeliteClient.newBuilder()
+			.dispatcher(dispatcher)
+			.protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+			.connectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.readTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.writeTimeout(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.callTimeout(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+			.eventListener(metrics)
+			.build();
+	}
+
+	public OkHttpClient getClient()
+	{
+		return client;
+	}
+
+	public HttpConnectionMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Sends a HEAD request to the API in the background so DNS, TCP and TLS are done
+	 * before the first real request. The future completes either way; a failed
+	 * preconnect only means the first request connects itself.
+	 */
+	public CompletableFuture<Void> preconnect(String baseUrl)
+	{
+		CompletableFuture<Void> done = new CompletableFuture<>();
+		HttpUrl url = baseUrl != null ? HttpUrl.parse(baseUrl) : null;
+		if (url == null)
+		{
+			log.warn("Not preconnecting, invalid API URL: {}", baseUrl);
+			done.complete(null);
+			return done;
+		}
+
+		client.newCall(new Request.Builder().url(url).head().build()).enqueue(new Callback()
+		{
+			@Override
+			public void onResponse(Call call, Response response)
+			{
+				response.close();
+				log.debug("Preconnected to {} over {}", url.host(), response.protocol());
+				done.complete(null);
+			}
+
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
+				log.debug("Preconnect to {} failed: {}", url.host(), e.getMessage());
+				done.complete(null);
+			}
+		});
+		return done;
+	}
+}
@@ -2,11 +2,15 @@ package com.gemetrics.plugin;
 
 import com.google.inject.Provides;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.*;
+import net.runelite.api.events.GameStateChanged;
 import net.runelite.api.events.GrandExchangeOfferChanged;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ClientShutdown;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
 import net.runelite.client.ui.ClientToolbar;
@@ -27,6 +31,9 @@ public class GeMetricsPlugin extends Plugin
 	@Inject
 	private Client client;
 
+	@Inject
+	private ClientThread clientThread;
+
 	@Inject
 	private GeMetricsConfig config;
 
@@ -36,6 +43,9 @@ public class GeMetricsPlugin extends Plugin
 	@Inject
 	private AuthenticationService authService;
 
+	@Inject
+	private OfferStateTracker offerStateTracker;
+
 	@Inject
 	private ClientToolbar clientToolbar;
 
@@ -44,6 +54,8 @@ public class GeMetricsPlugin extends Plugin
 
 	private GeMetricsPanel panel;
 	private NavigationButton navButton;
+	// Set once the client is exiting; the sync service is already stopped by then
+	private volatile boolean clientShutDown;
 
 	@Override
 	protected void startUp() throws Exception
@@ -82,6 +94,10 @@ public class GeMetricsPlugin extends Plugin
 		ensureClientIdSaved();
 		tradeSyncService.initialize();
 		
+		// Slot snapshots are read and written on the sync executor, never on the client thread
+		offerStateTracker.start(tradeSyncService::runInBackground,
+			() -> clientThread.invokeLater(this::trackRestoredOffers));
+		
 		// Detect OSRS username from RuneLite client
 		detectOsrsUsername();
 		
@@ -100,8 +116,27 @@ public class GeMetricsPlugin extends Plugin
 			clientToolbar.removeNavigation(navButton);
 		}
 		
-		// Sync any pending trades before shutdown
-		tradeSyncService.flushPendingTrades();
+		// The client exit already saved the slots and stopped sync; nothing is left to flush
+		if (!clientShutDown)
+		{
+			// Remember slot state so the next login's replay is not tracked again
+			offerStateTracker.saveSnapshot();
+			
+			// Sync any pending trades before shutdown
+			tradeSyncService.flushPendingTrades();
+		}
+		
+		// Persist whatever is still buffered and close the outbox; a no-op after the client exit
+		tradeSyncService.shutdown();
+	}
+
+	@Subscribe
+	public void onClientShutdown(ClientShutdown event)
+	{
+		// RuneLite exits without stopping plugins, so this is the last chance to persist
+		clientShutDown = true;
+		offerStateTracker.saveSnapshot();
+		tradeSyncService.shutdown();
 	}
 
 	@Subscribe
@@ -114,8 +149,42 @@ public class GeMetricsPlugin extends Plugin
 			return;
 		}
 
+		// Skip replays of offers we have already seen (login, world hop).
+		// Offers can arrive before LOGGED_IN, so make sure the right account is loaded first.
+		offerStateTracker.switchAccount(client.getAccountHash());
+		if (!offerStateTracker.update(event.getSlot(), offer, client.getGameState()))
+		{
+			return;
+		}
+
 		// Track the trade event
-		tradeSyncService.handleTradeEvent(offer);
+		int slot = event.getSlot();
+		tradeSyncService.handleTradeEvent(slot, offer, offerStateTracker.getOfferGeneration(slot));
+	}
+
+	private void trackRestoredOffers()
+	{
+		// Offers that arrived before the account's saved slots were read
+		for (OfferStateTracker.SlotChange change : offerStateTracker.finishRestore())
+		{
+			tradeSyncService.handleTradeEvent(change.getSlot(), change.getOffer(), change.getOfferGeneration());
+		}
+	}
+
+	@Subscribe
+	public void onGameStateChanged(GameStateChanged event)
+	{
+		GameState gameState = event.getGameState();
+		
+		if (gameState == GameState.LOGGED_IN)
+		{
+			// Slot state is kept per account so switching accounts does not look like new offers
+			offerStateTracker.switchAccount(client.getAccountHash());
+		}
+		else if (gameState == GameState.LOGIN_SCREEN)
+		{
+			offerStateTracker.saveSnapshot();
+		}
 	}
 
 	private void detectOsrsUsername()
@@ -157,5 +226,17 @@ public class GeMetricsPlugin extends Plugin
 	{
 		return configManager.getConfig(GeMetricsConfig.class);
 	}
+
+	@Provides
+	@Singleton
+	TradeStore provideTradeStore(GeMetricsConfig config, LocalTradeStorage localStorage)
+	{
+		// Read once; switching backends takes effect on the next start
+		if (config.tradeStoreBackend() == TradeStoreBackend.JOURNAL)
+		{
+			return new JournalTradeStore();
+		}
+		return localStorage;
+	}
 }
 
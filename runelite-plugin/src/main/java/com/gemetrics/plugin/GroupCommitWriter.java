@@ -0,0 +1,223 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects database writes for a short window and hands them to a {@link Flusher} as one
+ * group, so that many trades share a single transaction and a single disk sync.
+ *
+ * Each submitted write gets a future that completes once its group has been committed,
+ * or fails if the group was rolled back.
+ */
+@Slf4j
+public class GroupCommitWriter
+{
+	public enum Kind
+	{
+		SAVE,
+		REMOVE,
+		UPDATE_RETRY,
+		ACK,
+		RELEASE
+	}
+
+	public static class PendingWrite
+	{
+		private final Kind kind;
+		private final TradeEvent trade;
+		// Encoded by the caller, so the commit thread only copies bytes
+		private final byte[] payload;
+		private final String runeliteEventId;
+		private final int retryCount;
+		private final String lastError;
+		private final Instant nextRetryAt;
+		private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+		private PendingWrite(Kind kind, TradeEvent trade, byte[] payload, String runeliteEventId, int retryCount,
+			String lastError, Instant nextRetryAt)
+		{
+			this.kind = kind;
+			this.trade = trade;
+			this.payload = payload;
+			this.runeliteEventId = runeliteEventId;
+			this.retryCount = retryCount;
+			this.lastError = lastError;
+			this.nextRetryAt = nextRetryAt;
+		}
+
+		static PendingWrite save(TradeEvent trade, byte[] payload)
+		{
+			return new PendingWrite(Kind.SAVE, trade, payload, trade.getRuneliteEventId(), 0, null, null);
+		}
+
+		static PendingWrite remove(String runeliteEventId)
+		{
+			return new PendingWrite(Kind.REMOVE, null, null, runeliteEventId, 0, null, null);
+		}
+
+		static PendingWrite ack(String runeliteEventId)
+		{
+			return new PendingWrite(Kind.ACK, null, null, runeliteEventId, 0, null, null);
+		}
+
+		static PendingWrite release(String runeliteEventId)
+		{
+			return new PendingWrite(Kind.RELEASE, null, null, runeliteEventId, 0, null, null);
+		}
+
+		static PendingWrite updateRetry(String runeliteEventId, int retryCount, String lastError, Instant nextRetryAt)
+		{
+			return new PendingWrite(Kind.UPDATE_RETRY, null, null, runeliteEventId, retryCount, lastError, nextRetryAt);
+		}
+
+		public Kind getKind() { return kind; }
+		public TradeEvent getTrade() { return trade; }
+		public byte[] getPayload() { return payload; }
+		public String getRuneliteEventId() { return runeliteEventId; }
+		public int getRetryCount() { return retryCount; }
+		public String getLastError() { return lastError; }
+		public Instant getNextRetryAt() { return nextRetryAt; }
+	}
+
+	/**
+	 * Writes a whole group inside one transaction. Must either commit all of it or throw.
+	 */
+	public interface Flusher
+	{
+		void flush(List<PendingWrite> writes) throws SQLException;
+	}
+
+	private final Flusher flusher;
+	private final long windowNanos;
+	private final int maxBatchSize;
+	private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+	private final Thread thread;
+	private volatile boolean running = true;
+	private long groupsCommitted;
+	private long writesCommitted;
+
+	public GroupCommitWriter(Flusher flusher, long windowMillis, int maxBatchSize)
+	{
+		this.flusher = flusher;
+		this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+		this.maxBatchSize = maxBatchSize;
+		this.thread = new Thread(this::run, "GeMetrics-DbCommit");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	public CompletableFuture<Void> submit(PendingWrite write)
+	{
+		if (!running)
+		{
+			CompletableFuture<Void> rejected = new CompletableFuture<>();
+			rejected.completeExceptionally(new IllegalStateException("Group commit writer is shut down"));
+			return rejected;
+		}
+
+		queue.add(write);
+		return write.future;
+	}
+
+	private void run()
+	{
+		List<PendingWrite> group = new ArrayList<>(maxBatchSize);
+		while (running || !queue.isEmpty())
+		{
+			try
+			{
+				PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+				{
+					continue;
+				}
+
+				// Keep collecting until the window closes or the group is full
+				group.add(first);
+				long deadline = System.nanoTime() + windowNanos;
+				while (group.size() < maxBatchSize)
+				{
+					long remaining = deadline - System.nanoTime();
+					PendingWrite next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+					if (next == null)
+					{
+						break;
+					}
+					group.add(next);
+				}
+
+				commit(group);
+			}
+			catch (InterruptedException e)
+			{
+				// Shutdown requested; the loop drains what is left. Writes already taken off
+				// the queue are committed here, or their callers would wait forever.
+				running = false;
+				if (!group.isEmpty())
+				{
+					commit(group);
+				}
+			}
+			finally
+			{
+				group.clear();
+			}
+		}
+	}
+
+	private void commit(List<PendingWrite> group)
+	{
+		try
+		{
+			flusher.flush(group);
+			groupsCommitted++;
+			writesCommitted += group.size();
+			for (PendingWrite write : group)
+			{
+				write.future.complete(null);
+			}
+		}
+		catch (Exception e)
+		{
+			log.error("Group commit of {} writes failed", group.size(), e);
+			for (PendingWrite write : group)
+			{
+				write.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting writes and waits for everything already queued to be committed.
+	 */
+	public void shutdown()
+	{
+		running = false;
+		try
+		{
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		// Anything that raced past the running check can no longer be committed
+		PendingWrite orphan;
+		while ((orphan = queue.poll()) != null)
+		{
+			orphan.future.completeExceptionally(new IllegalStateException("Group commit writer is shut down"));
+		}
+
+		log.info("Group commit writer stopped: {} writes in {} transactions", writesCommitted, groupsCommitted);
+	}
+}
@@ -0,0 +1,78 @@
+package com.gemetrics.plugin;
+
+import lombok.Value;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-host connection counters, fed by OkHttp call events.
+ *
+ * Every call acquires a connection; only some of them had to open one (and do a TLS
+ * handshake) first. The difference is how often the pool saved a round trip.
+ */
+public class HttpConnectionMetrics extends EventListener
+{
+	@Value
+	public static class HostStats
+	{
+		long connectionsAcquired;
+		long connectionsOpened;
+		long tlsHandshakes;
+
+		public long getConnectionsReused()
+		{
+			return Math.max(0, connectionsAcquired - connectionsOpened);
+		}
+	}
+
+	private static final class Counters
+	{
+		final LongAdder acquired = new LongAdder();
+		final LongAdder opened = new LongAdder();
+		final LongAdder handshakes = new LongAdder();
+	}
+
+	private final Map<String, Counters> byHost = new ConcurrentHashMap<>();
+
+	public HostStats getStats(String host)
+	{
+		Counters counters = byHost.get(host);
+		if (counters == null)
+		{
+			return new HostStats(0, 0, 0);
+		}
+		return new HostStats(counters.acquired.sum(), counters.opened.sum(), counters.handshakes.sum());
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol)
+	{
+		countersFor(call).opened.increment();
+	}
+
+	@Override
+	public void secureConnectEnd(Call call, Handshake handshake)
+	{
+		countersFor(call).handshakes.increment();
+	}
+
+	@Override
+	public void connectionAcquired(Call call, Connection connection)
+	{
+		countersFor(call).acquired.increment();
+	}
+
+	private Counters countersFor(Call call)
+	{
+		return byHost.computeIfAbsent(call.request().url().host(), host -> new Counters());
+	}
+}
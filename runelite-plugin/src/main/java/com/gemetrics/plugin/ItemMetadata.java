@@ -0,0 +1,21 @@
+package com.gemetrics.plugin;
+
+import lombok.Value;
+
+/**
+ * What the plugin needs to know about an item, as cached by {@link ItemMetadataCache}.
+ */
+@Value
+public class ItemMetadata
+{
+	String name;
+	int geLimit;
+	int highAlchValue;
+	// False for the placeholder used when the item could not be looked up; never persisted
+	boolean known;
+
+	public static ItemMetadata unknown(int itemId)
+	{
+		return new ItemMetadata("Item " + itemId, 0, 0, false);
+	}
+}
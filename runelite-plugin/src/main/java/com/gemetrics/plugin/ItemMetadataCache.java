@@ -0,0 +1,310 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.ItemComposition;
+import net.runelite.client.RuneLite;
+import net.runelite.client.game.ItemManager;
+import net.runelite.client.game.ItemStats;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Item name, GE buy limit and high alch value by item id, in front of {@link ItemManager}.
+ *
+ * Entries live in an open-addressing table keyed by the primitive item id (linear probing,
+ * at most half full), so a lookup is an array probe with no boxing. The table is filled
+ * lazily as offers come in, saved on shutdown and loaded again on the next start, so most
+ * sessions never ask ItemManager for an item they have traded before.
+ *
+ * Items that cannot be looked up get an {@link ItemMetadata#unknown} placeholder. It is
+ * neither cached nor saved, so the next trade of the item asks ItemManager again, e.g.
+ * once it is ready after login.
+ */
+@Slf4j
+@Singleton
+public class ItemMetadataCache
+{
+	static final String FILE_NAME = "ge-metrics-items.bin";
+
+	private static final int FILE_MAGIC = 0x47454D49;
+	private static final int FILE_VERSION = 1;
+	// Must be a power of two
+	private static final int INITIAL_CAPACITY = 256;
+
+	@Inject
+	private ItemManager itemManager;
+
+	private final File file;
+	private final IntFunction<ItemMetadata> resolver;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	// Guarded by this; a null value marks an empty slot, so item id 0 needs no special case
+	private int[] keys;
+	private ItemMetadata[] values;
+	private int size;
+	private boolean dirty;
+
+	public ItemMetadataCache()
+	{
+		// Store the cache in RuneLite's config directory
+		this(new File(RuneLite.RUNELITE_DIR, FILE_NAME), null);
+	}
+
+	/**
+	 * @param resolver looks up items the cache does not hold; null to use ItemManager
+	 */
+	public ItemMetadataCache(File file, IntFunction<ItemMetadata> resolver)
+	{
+		this.file = file;
+		this.resolver = resolver != null ? resolver : this::resolveFromItemManager;
+		this.keys = new int[INITIAL_CAPACITY];
+		this.values = new ItemMetadata[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Metadata for an item, looked up and cached on first use. Misses go to ItemManager,
+	 * so call this on the client thread.
+	 */
+	public ItemMetadata get(int itemId)
+	{
+		synchronized (this)
+		{
+			ItemMetadata cached = lookup(itemId);
+			if (cached != null)
+			{
+				hits.incrementAndGet();
+				return cached;
+			}
+		}
+
+		misses.incrementAndGet();
+		ItemMetadata resolved = resolve(itemId);
+		if (!resolved.isKnown())
+		{
+			return resolved;
+		}
+		synchronized (this)
+		{
+			ItemMetadata raced = lookup(itemId);
+			if (raced != null)
+			{
+				return raced;
+			}
+			insert(itemId, resolved);
+			dirty = true;
+		}
+		return resolved;
+	}
+
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Warms the cache from the last session's file. Entries looked up in the meantime are
+	 * kept. A missing, unreadable or outdated file just means a cold start.
+	 */
+	public void load()
+	{
+		if (!file.exists())
+		{
+			return;
+		}
+
+		int loaded = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath()))))
+		{
+			if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION)
+			{
+				log.info("Ignoring item cache in an unknown format");
+				return;
+			}
+
+			int count = in.readInt();
+			for (int i = 0; i < count; i++)
+			{
+				int itemId = in.readInt();
+				ItemMetadata metadata = new ItemMetadata(in.readUTF(), in.readInt(), in.readInt(), true);
+				synchronized (this)
+				{
+					if (lookup(itemId) == null)
+					{
+						insert(itemId, metadata);
+						loaded++;
+					}
+				}
+			}
+			log.debug("Loaded {} items into the item cache", loaded);
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to load item cache, starting cold", e);
+		}
+	}
+
+	/**
+	 * Writes the known entries to disk if anything was added since the last save.
+	 * The file is replaced atomically, so a crash mid-write keeps the previous one.
+	 */
+	public void save()
+	{
+		List<Integer> itemIds = new ArrayList<>();
+		List<ItemMetadata> entries = new ArrayList<>();
+		synchronized (this)
+		{
+			if (!dirty)
+			{
+				return;
+			}
+			for (int slot = 0; slot < values.length; slot++)
+			{
+				if (values[slot] != null && values[slot].isKnown())
+				{
+					itemIds.add(keys[slot]);
+					entries.add(values[slot]);
+				}
+			}
+			dirty = false;
+		}
+
+		Path target = file.toPath();
+		Path tmp = target.resolveSibling(file.getName() + ".tmp");
+		try
+		{
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp))))
+			{
+				out.writeInt(FILE_MAGIC);
+				out.writeInt(FILE_VERSION);
+				out.writeInt(entries.size());
+				for (int i = 0; i < entries.size(); i++)
+				{
+					ItemMetadata metadata = entries.get(i);
+					out.writeInt(itemIds.get(i));
+					out.writeUTF(metadata.getName());
+					out.writeInt(metadata.getGeLimit());
+					out.writeInt(metadata.getHighAlchValue());
+				}
+			}
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			log.debug("Saved {} items to the item cache ({} hits, {} misses)", entries.size(), hits.get(), misses.get());
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to save item cache", e);
+			synchronized (this)
+			{
+				dirty = true;
+			}
+		}
+	}
+
+	private ItemMetadata resolve(int itemId)
+	{
+		try
+		{
+			ItemMetadata metadata = resolver.apply(itemId);
+			if (metadata != null)
+			{
+				return metadata;
+			}
+		}
+		catch (Exception e)
+		{
+			log.warn("Failed to look up item {}: {}", itemId, e.getMessage());
+		}
+		return ItemMetadata.unknown(itemId);
+	}
+
+	private ItemMetadata resolveFromItemManager(int itemId)
+	{
+		if (itemManager == null)
+		{
+			return null;
+		}
+
+		ItemComposition composition = itemManager.getItemComposition(itemId);
+		ItemStats stats = itemManager.getItemStats(itemId);
+		return new ItemMetadata(composition.getName(), stats != null ? stats.getGeLimit() : 0,
+			composition.getHaPrice(), true);
+	}
+
+	private ItemMetadata lookup(int itemId)
+	{
+		int mask = keys.length - 1;
+		for (int slot = hash(itemId) & mask; values[slot] != null; slot = (slot + 1) & mask)
+		{
+			if (keys[slot] == itemId)
+			{
+				return values[slot];
+			}
+		}
+		return null;
+	}
+
+	private void insert(int itemId, ItemMetadata metadata)
+	{
+		if ((size + 1) * 2 > keys.length)
+		{
+			rehash(keys.length * 2);
+		}
+
+		int mask = keys.length - 1;
+		int slot = hash(itemId) & mask;
+		while (values[slot] != null)
+		{
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = itemId;
+		values[slot] = metadata;
+		size++;
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = keys;
+		ItemMetadata[] oldValues = values;
+		keys = new int[capacity];
+		values = new ItemMetadata[capacity];
+		size = 0;
+		for (int slot = 0; slot < oldValues.length; slot++)
+		{
+			if (oldValues[slot] != null)
+			{
+				insert(oldKeys[slot], oldValues[slot]);
+			}
+		}
+	}
+
+	// Item ids are dense and sequential; spread them so neighbours do not cluster
+	private static int hash(int itemId)
+	{
+		int h = itemId * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,863 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.RuneLite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Outbox kept as an append-only journal of length-prefixed binary records, written through
+ * a memory-mapped segment file. Appending a trade is a memory copy instead of a JDBC round
+ * trip, which suits an outbox that is written far more often than it is read.
+ *
+ * Record layout: int body length, int CRC32 of the body, then the body (type byte followed
+ * by the record fields). A zero length marks the end of a segment. The live outbox is held
+ * in memory and rebuilt by replaying the segments on startup; leases are in-memory only,
+ * since they would all have expired by then anyway.
+ *
+ * Segments roll over at a fixed size. The ack checkpoint file records the first segment
+ * that still holds an unacknowledged trade; segments before it are deleted. Like the SQLite
+ * outbox, acknowledged event ids are remembered for a day so replays of them are ignored;
+ * the checkpoint also carries the ones whose ack records went with a deleted segment.
+ *
+ * Like SQLite with synchronous=NORMAL, appends are not forced to disk one by one: a crash
+ * of RuneLite loses nothing, a power loss can drop the last few records. Segments are
+ * forced when they roll over, before the checkpoint moves and on shutdown.
+ *
+ * Only the outbox lives here. Local trade history is recorded by LocalTradeStorage's own
+ * saves, so while the journal is selected no trades are added to history.
+ */
+@Slf4j
+public class JournalTradeStore implements TradeStore
+{
+	static final String DIRECTORY_NAME = "ge-metrics-journal";
+	static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+	private static final String SEGMENT_PREFIX = "journal-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String CHECKPOINT_FILE = "ack.checkpoint";
+	private static final int HEADER_BYTES = 8;
+
+	private static final byte RECORD_SAVE = 1;
+	private static final byte RECORD_ACK = 2;
+	private static final byte RECORD_RETRY = 3;
+	private static final byte RECORD_REMOVE = 4;
+
+	// Same retention as acknowledged rows in LocalTradeStorage
+	private static final long ACKED_RETENTION_SECONDS = 24 * 60 * 60;
+
+	private final ReentrantLock lock;
+	private final Path directory;
+	private final int segmentBytes;
+
+	// Live outbox in insertion order, keyed by event id
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	// Live trades per segment; a segment with none left can be dropped
+	private final TreeMap<Long, Integer> liveBySegment = new TreeMap<>();
+	// Live trades ordered by when they are next due; leasing takes from the front, so it
+	// costs as much as the batch, not the whole outbox
+	private final TreeSet<Entry> dueOrder = new TreeSet<>(
+		Comparator.comparingLong(Entry::dueAt).thenComparingLong(entry -> entry.sequence));
+	// Recently acknowledged event ids and when (epoch seconds), oldest first
+	private final Map<String, Long> ackedAt = new LinkedHashMap<>();
+	private long nextSequence = 1;
+
+	private long checkpointSegment;
+	private long activeSegment;
+	private MappedByteBuffer active;
+	private boolean closed;
+	// Published after every change, so the scheduler reads them without taking the lock
+	private volatile int pendingCount;
+	private volatile Long nextDueAt;
+
+	public JournalTradeStore()
+	{
+		// Store journal in RuneLite's config directory
+		this(new File(RuneLite.RUNELITE_DIR, DIRECTORY_NAME), DEFAULT_SEGMENT_BYTES);
+	}
+
+	public JournalTradeStore(File directory, int segmentBytes)
+	{
+		this.lock = new ReentrantLock();
+		this.directory = directory.toPath();
+		this.segmentBytes = segmentBytes;
+
+		try
+		{
+			load();
+		}
+		catch (IOException e)
+		{
+			log.error("Failed to open trade journal", e);
+			throw new RuntimeException("Journal initialization failed", e);
+		}
+	}
+
+	private static final class Entry
+	{
+		final long sequence;
+		final String eventId;
+		final long segment;
+		final long createdAt;
+		final byte[] payload;
+		int retryCount;
+		String lastError;
+		Long nextRetryAt;
+		Long leaseExpiresAt;
+
+		Entry(long sequence, String eventId, long segment, long createdAt, byte[] payload)
+		{
+			this.sequence = sequence;
+			this.eventId = eventId;
+			this.segment = segment;
+			this.createdAt = createdAt;
+			this.payload = payload;
+		}
+
+		long dueAt()
+		{
+			if (leaseExpiresAt != null)
+			{
+				return leaseExpiresAt;
+			}
+			return nextRetryAt != null ? nextRetryAt : 0;
+		}
+
+		// A null lease matches whoever currently holds the trade
+		boolean isLeasedBy(Long lease)
+		{
+			return leaseExpiresAt != null && (lease == null || leaseExpiresAt.equals(lease));
+		}
+	}
+
+	private void load() throws IOException
+	{
+		Files.createDirectories(directory);
+		checkpointSegment = readCheckpoint();
+
+		List<Long> segments = listSegments();
+		boolean tornTail = false;
+		int tailPosition = 0;
+		for (long segment : segments)
+		{
+			if (segment < checkpointSegment)
+			{
+				deleteSegment(segment);
+				continue;
+			}
+
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segmentPath(segment)));
+			tailPosition = replay(segment, buffer);
+			tornTail = tailPosition + 4 <= buffer.limit() && buffer.getInt(tailPosition) != 0;
+		}
+
+		long lastSegment = segments.isEmpty() ? -1 : segments.get(segments.size() - 1);
+		if (lastSegment < checkpointSegment)
+		{
+			activeSegment = checkpointSegment;
+			active = map(activeSegment);
+		}
+		else if (tornTail || tailPosition > segmentBytes - 4)
+		{
+			// Never append behind a damaged record, or stale bytes would follow ours
+			activeSegment = lastSegment + 1;
+			active = map(activeSegment);
+		}
+		else
+		{
+			activeSegment = lastSegment;
+			active = map(activeSegment);
+			active.position(tailPosition);
+		}
+
+		pruneAcked(Instant.now().getEpochSecond());
+		advanceCheckpoint();
+		publishStats();
+		log.info("Opened trade journal {} with {} pending trades", directory, entries.size());
+	}
+
+	/**
+	 * Applies every intact record in buffer.
+	 *
+	 * @return position just after the last intact record
+	 */
+	private int replay(long segment, ByteBuffer buffer) throws IOException
+	{
+		int position = 0;
+		CRC32 crc = new CRC32();
+		while (position + HEADER_BYTES <= buffer.limit())
+		{
+			int length = buffer.getInt(position);
+			if (length <= 0 || position + HEADER_BYTES + length > buffer.limit())
+			{
+				break;
+			}
+
+			crc.reset();
+			crc.update(buffer.array(), position + HEADER_BYTES, length);
+			if ((int) crc.getValue() != buffer.getInt(position + 4))
+			{
+				log.warn("Ignoring damaged journal record in segment {} at {}", segment, position);
+				break;
+			}
+
+			apply(segment, new DataInputStream(
+				new ByteArrayInputStream(buffer.array(), position + HEADER_BYTES, length)));
+			position += HEADER_BYTES + length;
+		}
+		return position;
+	}
+
+	private void apply(long segment, DataInputStream in) throws IOException
+	{
+		byte type = in.readByte();
+		String eventId = in.readUTF();
+		switch (type)
+		{
+			case RECORD_SAVE:
+				long createdAt = in.readLong();
+				byte[] payload = new byte[in.readInt()];
+				in.readFully(payload);
+				addEntry(eventId, segment, createdAt, payload);
+				break;
+			case RECORD_ACK:
+				long acked = in.readLong();
+				removeEntry(eventId);
+				rememberAck(eventId, acked);
+				break;
+			case RECORD_REMOVE:
+				removeEntry(eventId);
+				break;
+			case RECORD_RETRY:
+				Entry entry = entries.get(eventId);
+				int retryCount = in.readInt();
+				long nextRetryAt = in.readLong();
+				String lastError = in.readBoolean() ? in.readUTF() : null;
+				if (entry != null)
+				{
+					untrackDue(entry);
+					entry.retryCount = retryCount;
+					entry.lastError = lastError;
+					entry.nextRetryAt = nextRetryAt >= 0 ? nextRetryAt : null;
+					trackDue(entry);
+				}
+				break;
+			default:
+				log.warn("Skipping unknown journal record type {}", type);
+		}
+	}
+
+	@Override
+	public void savePendingTrade(TradeEvent trade)
+	{
+		if (trade == null || trade.getRuneliteEventId() == null) return;
+
+		lock.lock();
+		try
+		{
+			if (closed)
+			{
+				throw new IllegalStateException("Trade journal is closed");
+			}
+			if (entries.containsKey(trade.getRuneliteEventId()) || ackedAt.containsKey(trade.getRuneliteEventId()))
+			{
+				return;
+			}
+
+			long createdAt = Instant.now().getEpochSecond();
+			byte[] payload = TradePayload.encode(trade);
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(body);
+			out.writeByte(RECORD_SAVE);
+			out.writeUTF(trade.getRuneliteEventId());
+			out.writeLong(createdAt);
+			out.writeInt(payload.length);
+			out.write(payload);
+
+			append(body.toByteArray());
+			addEntry(trade.getRuneliteEventId(), activeSegment, createdAt, payload);
+			publishStats();
+
+			log.debug("Appended pending trade to journal: {}", trade.getRuneliteEventId());
+		}
+		catch (IOException e)
+		{
+			log.error("Failed to save pending trade {}", trade.getRuneliteEventId(), e);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> savePendingTradeAsync(TradeEvent trade)
+	{
+		// An append is cheap enough to do inline
+		try
+		{
+			savePendingTrade(trade);
+		}
+		catch (IllegalStateException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public List<TradeEvent> loadPendingTrades()
+	{
+		List<TradeEvent> trades = new ArrayList<>();
+		lock.lock();
+		try
+		{
+			long now = Instant.now().getEpochSecond();
+			for (Entry entry : entries.values())
+			{
+				if (entry.nextRetryAt == null || entry.nextRetryAt <= now)
+				{
+					trades.add(TradePayload.decode(entry.payload));
+				}
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		return trades;
+	}
+
+	@Override
+	public List<PendingTrade> leasePendingTrades(int limit, long leaseSeconds)
+	{
+		List<PendingTrade> leased = new ArrayList<>();
+		if (limit <= 0) return leased;
+
+		lock.lock();
+		try
+		{
+			long now = Instant.now().getEpochSecond();
+			List<Entry> claimed = new ArrayList<>();
+			while (claimed.size() < limit && !dueOrder.isEmpty() && dueOrder.first().dueAt() <= now)
+			{
+				claimed.add(dueOrder.pollFirst());
+			}
+
+			// Put back only after the loop; a lease that is already over would be due again
+			for (Entry entry : claimed)
+			{
+				entry.leaseExpiresAt = now + leaseSeconds;
+				trackDue(entry);
+				leased.add(new PendingTrade(entry.sequence, entry.createdAt, entry.retryCount,
+					entry.eventId, entry.payload, entry.leaseExpiresAt));
+			}
+
+			publishStats();
+			log.debug("Leased {} pending trades", leased.size());
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		return leased;
+	}
+
+	@Override
+	public void ackPendingTrade(String runeliteEventId)
+	{
+		ackPendingTrades(Collections.singletonList(runeliteEventId));
+	}
+
+	@Override
+	public void ackPendingTrades(Collection<String> runeliteEventIds)
+	{
+		appendRemovals(runeliteEventIds, RECORD_ACK, "acknowledge pending trades");
+	}
+
+	@Override
+	public void releasePendingTrade(String runeliteEventId)
+	{
+		if (runeliteEventId == null) return;
+
+		lock.lock();
+		try
+		{
+			Entry entry = entries.get(runeliteEventId);
+			if (entry != null)
+			{
+				untrackDue(entry);
+				entry.leaseExpiresAt = null;
+				trackDue(entry);
+				publishStats();
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> releasePendingTradeAsync(String runeliteEventId)
+	{
+		releasePendingTrade(runeliteEventId);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public void removePendingTrade(String runeliteEventId)
+	{
+		removePendingTrades(Collections.singletonList(runeliteEventId));
+	}
+
+	@Override
+	public void removePendingTrades(Collection<String> runeliteEventIds)
+	{
+		// Unlike an ack, a removal is forgotten, so the same event can be queued again
+		appendRemovals(runeliteEventIds, RECORD_REMOVE, "remove pending trades");
+	}
+
+	@Override
+	public void updateRetryInfo(Collection<RetryUpdate> updates)
+	{
+		if (updates == null || updates.isEmpty()) return;
+
+		lock.lock();
+		try
+		{
+			for (RetryUpdate update : updates)
+			{
+				Entry entry = update != null ? entries.get(update.getRuneliteEventId()) : null;
+				if (entry == null || !entry.isLeasedBy(update.getLeaseExpiresAt()))
+				{
+					continue;
+				}
+
+				Long nextRetryAt = update.getNextRetryAt() != null ? update.getNextRetryAt().getEpochSecond() : null;
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(body);
+				out.writeByte(RECORD_RETRY);
+				out.writeUTF(update.getRuneliteEventId());
+				out.writeInt(update.getRetryCount());
+				out.writeLong(nextRetryAt != null ? nextRetryAt : -1);
+				out.writeBoolean(update.getLastError() != null);
+				if (update.getLastError() != null)
+				{
+					out.writeUTF(update.getLastError());
+				}
+				append(body.toByteArray());
+
+				untrackDue(entry);
+				entry.retryCount = update.getRetryCount();
+				entry.lastError = update.getLastError();
+				entry.nextRetryAt = nextRetryAt;
+				entry.leaseExpiresAt = null;
+				trackDue(entry);
+			}
+			publishStats();
+		}
+		catch (IOException e)
+		{
+			log.error("Failed to update retry info", e);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void cleanupOldTrades(int maxAgeDays)
+	{
+		List<String> expired = new ArrayList<>();
+		lock.lock();
+		try
+		{
+			long now = Instant.now().getEpochSecond();
+			long cutoffTime = now - (maxAgeDays * 24L * 60 * 60);
+			for (Map.Entry<String, Entry> entry : entries.entrySet())
+			{
+				if (entry.getValue().createdAt < cutoffTime)
+				{
+					expired.add(entry.getKey());
+				}
+			}
+			appendRemovals(expired, RECORD_REMOVE, "cleanup old trades");
+			pruneAcked(now);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		if (!expired.isEmpty())
+		{
+			log.info("Cleaned up {} old pending trades", expired.size());
+		}
+	}
+
+	@Override
+	public int getPendingTradeCount()
+	{
+		return pendingCount;
+	}
+
+	@Override
+	public Long getNextDueAt()
+	{
+		return nextDueAt;
+	}
+
+	@Override
+	public void open()
+	{
+		lock.lock();
+		try
+		{
+			if (closed)
+			{
+				// Rebuilt from disk like on startup; leases are dropped as they would be there
+				entries.clear();
+				liveBySegment.clear();
+				dueOrder.clear();
+				load();
+				closed = false;
+			}
+		}
+		catch (IOException e)
+		{
+			log.error("Failed to reopen trade journal", e);
+			throw new RuntimeException("Journal initialization failed", e);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void shutdown()
+	{
+		lock.lock();
+		try
+		{
+			if (!closed)
+			{
+				closed = true;
+				active.force();
+				log.info("Trade journal closed");
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Takes trades out of the outbox with one RECORD_ACK or RECORD_REMOVE each.
+	 */
+	private void appendRemovals(Collection<String> runeliteEventIds, byte type, String action)
+	{
+		if (runeliteEventIds == null || runeliteEventIds.isEmpty()) return;
+
+		lock.lock();
+		try
+		{
+			long now = Instant.now().getEpochSecond();
+			int removed = 0;
+			for (String eventId : runeliteEventIds)
+			{
+				if (eventId == null || !entries.containsKey(eventId))
+				{
+					continue;
+				}
+
+				ByteArrayOutputStream body = new ByteArrayOutputStream();
+				DataOutputStream out = new DataOutputStream(body);
+				out.writeByte(type);
+				out.writeUTF(eventId);
+				if (type == RECORD_ACK)
+				{
+					out.writeLong(now);
+				}
+				append(body.toByteArray());
+				removeEntry(eventId);
+				if (type == RECORD_ACK)
+				{
+					rememberAck(eventId, now);
+				}
+				removed++;
+			}
+
+			if (removed > 0)
+			{
+				publishStats();
+				advanceCheckpoint();
+			}
+			log.debug("Journal {}: {} trades", action, removed);
+		}
+		catch (IOException e)
+		{
+			log.error("Failed to {}", action, e);
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writes one record to the active segment, rolling to a new segment if it does not fit.
+	 * The length is written last, so a record cut short by a crash still reads as the end
+	 * of the segment.
+	 */
+	private void append(byte[] body) throws IOException
+	{
+		if (closed)
+		{
+			throw new IOException("Trade journal is closed");
+		}
+		if (HEADER_BYTES + body.length > segmentBytes - 4)
+		{
+			throw new IOException("Journal record of " + body.length + " bytes does not fit in a segment");
+		}
+
+		// Keep room for the zero length that terminates the segment
+		if (active.position() + HEADER_BYTES + body.length > segmentBytes - 4)
+		{
+			roll();
+		}
+
+		CRC32 crc = new CRC32();
+		crc.update(body);
+
+		int position = active.position();
+		active.position(position + HEADER_BYTES);
+		active.put(body);
+		active.putInt(position + 4, (int) crc.getValue());
+		active.putInt(position, body.length);
+	}
+
+	private void roll() throws IOException
+	{
+		active.force();
+		activeSegment++;
+		active = map(activeSegment);
+		log.debug("Rolled trade journal to segment {}", activeSegment);
+	}
+
+	private MappedByteBuffer map(long segment) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(segmentPath(segment),
+			StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			// The mapping stays valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+		}
+	}
+
+	private void addEntry(String eventId, long segment, long createdAt, byte[] payload)
+	{
+		if (entries.containsKey(eventId))
+		{
+			return;
+		}
+		Entry entry = new Entry(nextSequence++, eventId, segment, createdAt, payload);
+		entries.put(eventId, entry);
+		liveBySegment.merge(segment, 1, Integer::sum);
+		trackDue(entry);
+	}
+
+	private void removeEntry(String eventId)
+	{
+		Entry entry = entries.remove(eventId);
+		if (entry != null)
+		{
+			liveBySegment.computeIfPresent(entry.segment, (segment, live) -> live > 1 ? live - 1 : null);
+			untrackDue(entry);
+		}
+	}
+
+	// An entry's due time must only change between untrackDue and trackDue
+	private void trackDue(Entry entry)
+	{
+		dueOrder.add(entry);
+	}
+
+	private void untrackDue(Entry entry)
+	{
+		dueOrder.remove(entry);
+	}
+
+	private void publishStats()
+	{
+		pendingCount = entries.size();
+		nextDueAt = dueOrder.isEmpty() ? null : dueOrder.first().dueAt();
+	}
+
+	private void rememberAck(String eventId, long acked)
+	{
+		// Re-inserted so the map stays in ack order
+		ackedAt.remove(eventId);
+		ackedAt.put(eventId, acked);
+	}
+
+	private void pruneAcked(long now)
+	{
+		Iterator<Long> it = ackedAt.values().iterator();
+		while (it.hasNext() && it.next() < now - ACKED_RETENTION_SECONDS)
+		{
+			it.remove();
+		}
+	}
+
+	/**
+	 * Moves the checkpoint up to the first segment that still holds a live trade and
+	 * deletes everything before it.
+	 */
+	private void advanceCheckpoint() throws IOException
+	{
+		long firstLive = liveBySegment.isEmpty()
+			? activeSegment
+			: Math.min(liveBySegment.firstKey(), activeSegment);
+		if (firstLive <= checkpointSegment)
+		{
+			return;
+		}
+
+		active.force();
+		writeCheckpoint(firstLive);
+		for (long segment = checkpointSegment; segment < firstLive; segment++)
+		{
+			deleteSegment(segment);
+		}
+		checkpointSegment = firstLive;
+	}
+
+	/**
+	 * Reads the first live segment and the acknowledged ids saved with it.
+	 */
+	private long readCheckpoint()
+	{
+		ackedAt.clear();
+		Path path = directory.resolve(CHECKPOINT_FILE);
+		if (!Files.exists(path))
+		{
+			return 0;
+		}
+
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(path)))
+		{
+			long segment = in.readLong();
+			int acked = in.readInt();
+			for (int i = 0; i < acked; i++)
+			{
+				String eventId = in.readUTF();
+				rememberAck(eventId, in.readLong());
+			}
+			return segment;
+		}
+		catch (IOException e)
+		{
+			// Replaying from the oldest segment is always safe, just slower
+			log.warn("Unreadable journal checkpoint, replaying all segments", e);
+			ackedAt.clear();
+			return 0;
+		}
+	}
+
+	/**
+	 * Saves the checkpoint with every remembered ack, since the segments about to be
+	 * deleted may hold the only record of them.
+	 */
+	private void writeCheckpoint(long segment) throws IOException
+	{
+		Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp)))
+		{
+			out.writeLong(segment);
+			out.writeInt(ackedAt.size());
+			for (Map.Entry<String, Long> acked : ackedAt.entrySet())
+			{
+				out.writeUTF(acked.getKey());
+				out.writeLong(acked.getValue());
+			}
+		}
+		Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+			StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private List<Long> listSegments() throws IOException
+	{
+		List<Long> segments = new ArrayList<>();
+		try (Stream<Path> files = Files.list(directory))
+		{
+			Iterator<Path> it = files.iterator();
+			while (it.hasNext())
+			{
+				String name = it.next().getFileName().toString();
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+				{
+					try
+					{
+						segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+							name.length() - SEGMENT_SUFFIX.length())));
+					}
+					catch (NumberFormatException e)
+					{
+						log.warn("Ignoring unexpected file in trade journal: {}", name);
+					}
+				}
+			}
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private void deleteSegment(long segment)
+	{
+		try
+		{
+			Files.deleteIfExists(segmentPath(segment));
+		}
+		catch (IOException e)
+		{
+			// Windows refuses while an old mapping is still alive; the next startup retries
+			log.debug("Could not delete journal segment {} yet", segment, e);
+		}
+	}
+
+	private Path segmentPath(long segment)
+	{
+		return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+	}
+}
@@ -1,38 +1,108 @@
 package com.gemetrics.plugin;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.client.RuneLite;
+import org.sqlite.SQLiteConfig;
 
 import javax.inject.Singleton;
 import java.io.File;
 import java.sql.*;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Slf4j
 @Singleton
-public class LocalTradeStorage
+public class LocalTradeStorage implements TradeStore
 {
 	private static final String DB_NAME = "ge-metrics-trades.db";
-	private static final int CURRENT_SCHEMA_VERSION = 1;
+	private static final int CURRENT_SCHEMA_VERSION = 9;
+	
+	// Outbox row states (pending_trades.state)
+	static final int STATE_PENDING = 0;
+	static final int STATE_LEASED = 1;
+	static final int STATE_ACKED = 2;
+	
+	// Acknowledged rows are kept briefly so replays can be recognised, then purged
+	private static final long ACKED_RETENTION_SECONDS = 24 * 60 * 60;
+
+	// Connection tuning; WAL lets the read pool run alongside the writer connection
+	private static final int READ_POOL_SIZE = 2;
+	private static final long MMAP_SIZE_BYTES = 64L * 1024 * 1024;
+	// Negative cache_size is in KiB rather than pages
+	private static final int CACHE_SIZE_KIB = 8 * 1024;
+	private static final int BUSY_TIMEOUT_MILLIS = 5000;
+
+	// Rows backfilled per transaction when promoting JSON fields to columns
+	private static final int BACKFILL_CHUNK_SIZE = 500;
+	// last_error of rows the backfill could not parse; they are never leased
+	public static final String UNREADABLE_TRADE_ERROR = "unreadable trade_data";
+
+	// Background maintenance works in small transactions so it never stalls the writer
+	private static final int CLEANUP_CHUNK_SIZE = 500;
+	private static final int VACUUM_CHUNK_PAGES = 256;
+	// plugin_settings key present until the one-off VACUUM for auto_vacuum has run
+	public static final String VACUUM_PENDING_SETTING = "incremental_vacuum_pending";
+	// Larger files keep auto_vacuum off; rewriting them would block writes past BUSY_TIMEOUT_MILLIS
+	static final long VACUUM_CONVERSION_MAX_BYTES = 16L * 1024 * 1024;
+
+	// Replays of an event that is already in the outbox are ignored by the unique index
+	private static final String INSERT_PENDING_TRADE = """
+		INSERT OR IGNORE INTO pending_trades
+			(trade_data, created_at, event_id, item_id, offer_type, status, trade_timestamp)
+		VALUES (?, ?, ?, ?, ?, ?, ?)
+	""";
+	private static final String DELETE_PENDING_TRADE =
+		"DELETE FROM pending_trades WHERE event_id = ?";
+	private static final String UPDATE_RETRY_INFO = """
+		UPDATE pending_trades
+		SET retry_count = ?, last_error = ?, next_retry_at = ?, state = 0, lease_expires_at = NULL
+		WHERE event_id = ? AND state = 1 AND lease_expires_at = COALESCE(?, lease_expires_at)
+	""";
+	private static final String ACK_PENDING_TRADE = """
+		UPDATE pending_trades
+		SET state = 2, acked_at = ?, lease_expires_at = NULL
+		WHERE event_id = ?
+	""";
+	private static final String RELEASE_PENDING_TRADE = """
+		UPDATE pending_trades
+		SET state = 0, lease_expires_at = NULL
+		WHERE state = 1 AND event_id = ?
+	""";
 	
 	private final Gson gson;
 	private final ReentrantLock dbLock;
+	// Writer connection; every write and lease goes through it under dbLock
 	private Connection connection;
+	private StatementCache writeStatements;
+	private ReadConnectionPool readPool;
+	private final TradeHistoryStore history;
 	private final File dbFile;
+	private volatile GroupCommitWriter groupCommitWriter;
 
 	public LocalTradeStorage()
 	{
-		this.gson = new GsonBuilder().create();
-		this.dbLock = new ReentrantLock();
-		
 		// Store database in RuneLite's config directory
-		File runeliteDir = RuneLite.RUNELITE_DIR;
-		this.dbFile = new File(runeliteDir, DB_NAME);
+		this(new File(RuneLite.RUNELITE_DIR, DB_NAME));
+	}
+
+	public LocalTradeStorage(File dbFile)
+	{
+		this.gson = GeMetricsGson.INSTANCE;
+		this.dbLock = new ReentrantLock();
+		this.dbFile = dbFile;
+		this.history = new TradeHistoryStore();
 		
 		initializeDatabase();
 	}
@@ -41,10 +111,11 @@ public class LocalTradeStorage
 	{
 		try
 		{
-			// Create connection
-			String dbUrl = "jdbc:sqlite:" + dbFile.getAbsolutePath();
-			connection = DriverManager.getConnection(dbUrl);
+			// Create writer connection
+			String dbUrl = databaseUrl();
+			connection = createConfig(false).createConnection(dbUrl);
 			connection.setAutoCommit(false);
+			writeStatements = new StatementCache(connection);
 			
 			log.info("Connected to SQLite database: {}", dbFile.getAbsolutePath());
 			
@@ -54,6 +125,9 @@ public class LocalTradeStorage
 			// Run migrations if needed
 			runMigrations();
 			
+			// Readers are opened last so they see the migrated schema
+			readPool = new ReadConnectionPool(dbUrl, createConfig(true), READ_POOL_SIZE);
+			
 		}
 		catch (SQLException e)
 		{
@@ -62,6 +136,36 @@ public class LocalTradeStorage
 		}
 	}
 
+	private String databaseUrl()
+	{
+		return "jdbc:sqlite:" + dbFile.getAbsolutePath();
+	}
+
+	/**
+	 * WAL journal with synchronous=NORMAL: commits no longer fsync the main database and
+	 * readers never block the writer. A power loss can drop the last few commits but
+	 * cannot corrupt the database; a crash of RuneLite itself loses nothing.
+	 */
+	private static SQLiteConfig createConfig(boolean readOnly)
+	{
+		SQLiteConfig config = new SQLiteConfig();
+		if (readOnly)
+		{
+			// Journal mode is persistent and set by the writer; changing it needs write access
+			config.setReadOnly(true);
+		}
+		else
+		{
+			config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+		}
+		config.setSynchronous(SQLiteConfig.SynchronousMode.NORMAL);
+		config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+		config.setCacheSize(-CACHE_SIZE_KIB);
+		config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(MMAP_SIZE_BYTES));
+		config.setBusyTimeout(BUSY_TIMEOUT_MILLIS);
+		return config;
+	}
+
 	private void createTables() throws SQLException
 	{
 		dbLock.lock();
@@ -71,7 +175,7 @@ public class LocalTradeStorage
 			String createPendingTradesTable = """
 				CREATE TABLE IF NOT EXISTS pending_trades (
 					id INTEGER PRIMARY KEY AUTOINCREMENT,
-					trade_data TEXT NOT NULL,
+					trade_data BLOB NOT NULL,
 					created_at INTEGER NOT NULL,
 					retry_count INTEGER DEFAULT 0,
 					last_error TEXT,
@@ -118,77 +222,118 @@ public class LocalTradeStorage
 		{
 			log.info("Running database migrations from version {} to {}", currentVersion, CURRENT_SCHEMA_VERSION);
 			
-			// Add future migrations here
-			// For now, just update the version
-			setSchemaVersion(CURRENT_SCHEMA_VERSION);
-		}
-	}
+			if (currentVersion < 2)
+			{
+				migrateToOutbox();
+			}
 
-	private int getSchemaVersion() throws SQLException
-	{
-		String query = "SELECT version FROM schema_version ORDER BY version DESC LIMIT 1";
-		
-		try (Statement stmt = connection.createStatement();
-			 ResultSet rs = stmt.executeQuery(query))
-		{
-			if (rs.next())
+			if (currentVersion < 3)
 			{
-				return rs.getInt("version");
+				migrateToTypedColumns();
 			}
-			else
+
+			if (currentVersion < 4)
 			{
-				return 0; // No version set, assume initial
+				migrateToKeysetIndex();
+			}
+
+			if (currentVersion < 5)
+			{
+				migrateToTradeHistory();
+			}
+
+			if (currentVersion < 6)
+			{
+				migrateToDueIndex();
+			}
+
+			if (currentVersion < 7)
+			{
+				migrateToIncrementalVacuum();
+			}
+
+			if (currentVersion < 8)
+			{
+				migrateToPayloadBlobs();
+			}
+
+			if (currentVersion < 9)
+			{
+				migrateToNarrowHistoryIndexes();
 			}
 		}
 	}
-
-	private void setSchemaVersion(int version) throws SQLException
+	
+	/**
+	 * Version 2: pending_trades becomes an outbox with per-row state
+	 * (pending, leased until lease_expires_at, acked at acked_at).
+	 */
+	private void migrateToOutbox() throws SQLException
 	{
-		String insert = "INSERT OR REPLACE INTO schema_version (version, applied_at) VALUES (?, ?)";
-		
-		try (PreparedStatement stmt = connection.prepareStatement(insert))
+		dbLock.lock();
+		try (Statement stmt = connection.createStatement())
 		{
-			stmt.setInt(1, version);
-			stmt.setLong(2, Instant.now().getEpochSecond());
-			stmt.executeUpdate();
+			addColumnIfMissing(stmt, "pending_trades", "state", "INTEGER NOT NULL DEFAULT 0");
+			addColumnIfMissing(stmt, "pending_trades", "lease_expires_at", "INTEGER");
+			addColumnIfMissing(stmt, "pending_trades", "acked_at", "INTEGER");
+			stmt.execute("CREATE INDEX IF NOT EXISTS idx_pending_trades_state ON pending_trades (state, created_at)");
+			setSchemaVersion(2);
 			connection.commit();
 		}
+		catch (SQLException e)
+		{
+			connection.rollback();
+			throw e;
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
 	}
 
-	public void savePendingTrade(TradeEvent trade)
+	/**
+	 * Version 3: event_id, item_id, offer_type, status and trade_timestamp are promoted
+	 * from the JSON blob to typed columns so lookups by event id use an index instead of
+	 * parsing every row with json_extract.
+	 */
+	private void migrateToTypedColumns() throws SQLException
 	{
-		if (trade == null) return;
-		
 		dbLock.lock();
 		try
 		{
-			String tradeJson = gson.toJson(trade);
-			String insert = """
-				INSERT INTO pending_trades (trade_data, created_at)
-				VALUES (?, ?)
-			""";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(insert))
+			// Committed ahead of the chunked backfill, so a run cut short by a crash leaves
+			// them behind; skip the ones that exist and let the backfill pick up where it was
+			try (Statement stmt = connection.createStatement())
+			{
+				addColumnIfMissing(stmt, "pending_trades", "event_id", "TEXT");
+				addColumnIfMissing(stmt, "pending_trades", "item_id", "INTEGER");
+				addColumnIfMissing(stmt, "pending_trades", "offer_type", "TEXT");
+				addColumnIfMissing(stmt, "pending_trades", "status", "TEXT");
+				addColumnIfMissing(stmt, "pending_trades", "trade_timestamp", "INTEGER");
+				connection.commit();
+			}
+
+			int backfilled = backfillTypedColumns();
+
+			try (Statement stmt = connection.createStatement())
 			{
-				stmt.setString(1, tradeJson);
-				stmt.setLong(2, Instant.now().getEpochSecond());
-				stmt.executeUpdate();
+				// Older versions could store the same event more than once; keep the first copy
+				int duplicates = stmt.executeUpdate("""
+					DELETE FROM pending_trades
+					WHERE event_id IS NOT NULL
+					  AND id NOT IN (SELECT MIN(id) FROM pending_trades WHERE event_id IS NOT NULL GROUP BY event_id)
+				""");
+				stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_pending_trades_event_id ON pending_trades (event_id)");
+				setSchemaVersion(3);
 				connection.commit();
-				
-				log.debug("Saved pending trade to database: {}", trade.getRuneliteEventId());
+
+				log.info("Backfilled {} pending trades, removed {} duplicates", backfilled, duplicates);
 			}
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to save pending trade", e);
-			try
-			{
-				connection.rollback();
-			}
-			catch (SQLException rollbackEx)
-			{
-				log.error("Failed to rollback transaction", rollbackEx);
-			}
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
@@ -196,81 +341,63 @@ public class LocalTradeStorage
 		}
 	}
 
-	public List<TradeEvent> loadPendingTrades()
+	private static void addColumnIfMissing(Statement stmt, String table, String column, String definition)
+		throws SQLException
 	{
-		List<TradeEvent> trades = new ArrayList<>();
-		
-		dbLock.lock();
-		try
+		try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")"))
 		{
-			String query = """
-				SELECT trade_data, retry_count, next_retry_at 
-				FROM pending_trades
-				WHERE next_retry_at IS NULL OR next_retry_at <= ?
-				ORDER BY created_at ASC
-			""";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(query))
+			while (rs.next())
 			{
-				stmt.setLong(1, Instant.now().getEpochSecond());
-				
-				try (ResultSet rs = stmt.executeQuery())
+				if (column.equalsIgnoreCase(rs.getString("name")))
 				{
-					while (rs.next())
-					{
-						String tradeJson = rs.getString("trade_data");
-						TradeEvent trade = gson.fromJson(tradeJson, TradeEvent.class);
-						trades.add(trade);
-					}
+					return;
 				}
 			}
-			
-			log.debug("Loaded {} pending trades from database", trades.size());
+		}
+		stmt.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+	}
+
+	/**
+	 * Version 4: index matching the (created_at, id) keyset order used for paging and
+	 * leasing, so both can stop after N rows instead of sorting the whole table.
+	 */
+	private void migrateToKeysetIndex() throws SQLException
+	{
+		dbLock.lock();
+		try (Statement stmt = connection.createStatement())
+		{
+			stmt.execute("CREATE INDEX IF NOT EXISTS idx_pending_trades_created ON pending_trades (created_at, id)");
+			setSchemaVersion(4);
+			connection.commit();
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to load pending trades", e);
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
 			dbLock.unlock();
 		}
-		
-		return trades;
 	}
 
-	public void removePendingTrade(String runeliteEventId)
+	/**
+	 * Version 5: catalog of the day-partitioned trade history tables. Partitions are
+	 * created as trades arrive, see {@link TradeHistoryStore}.
+	 */
+	private void migrateToTradeHistory() throws SQLException
 	{
-		if (runeliteEventId == null) return;
-		
 		dbLock.lock();
 		try
 		{
-			String delete = "DELETE FROM pending_trades WHERE json_extract(trade_data, '$.runeliteEventId') = ?";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(delete))
-			{
-				stmt.setString(1, runeliteEventId);
-				int deleted = stmt.executeUpdate();
-				connection.commit();
-				
-				if (deleted > 0)
-				{
-					log.debug("Removed pending trade from database: {}", runeliteEventId);
-				}
-			}
+			TradeHistoryStore.createCatalog(connection);
+			setSchemaVersion(5);
+			connection.commit();
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to remove pending trade", e);
-			try
-			{
-				connection.rollback();
-			}
-			catch (SQLException rollbackEx)
-			{
-				log.error("Failed to rollback transaction", rollbackEx);
-			}
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
@@ -278,38 +405,23 @@ public class LocalTradeStorage
 		}
 	}
 
-	public void updateTradeRetryInfo(String runeliteEventId, int retryCount, String lastError, Instant nextRetryAt)
+	/**
+	 * Version 6: covering index for the outbox count and next due time, which are all that
+	 * startup reads, so recovery cost does not grow with the size of trade_data.
+	 */
+	private void migrateToDueIndex() throws SQLException
 	{
 		dbLock.lock();
-		try
+		try (Statement stmt = connection.createStatement())
 		{
-			String update = """
-				UPDATE pending_trades 
-				SET retry_count = ?, last_error = ?, next_retry_at = ?
-				WHERE json_extract(trade_data, '$.runeliteEventId') = ?
-			""";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(update))
-			{
-				stmt.setInt(1, retryCount);
-				stmt.setString(2, lastError);
-				stmt.setLong(3, nextRetryAt != null ? nextRetryAt.getEpochSecond() : null);
-				stmt.setString(4, runeliteEventId);
-				stmt.executeUpdate();
-				connection.commit();
-			}
+			stmt.execute("CREATE INDEX IF NOT EXISTS idx_pending_trades_due ON pending_trades (state, next_retry_at, lease_expires_at)");
+			setSchemaVersion(6);
+			connection.commit();
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to update trade retry info", e);
-			try
-			{
-				connection.rollback();
-			}
-			catch (SQLException rollbackEx)
-			{
-				log.error("Failed to rollback transaction", rollbackEx);
-			}
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
@@ -317,38 +429,28 @@ public class LocalTradeStorage
 		}
 	}
 
-	public void saveSetting(String key, String value)
+	/**
+	 * Version 7: auto_vacuum=INCREMENTAL, so pages freed by cleanup can be handed back with
+	 * incremental_vacuum instead of the file only ever growing. Switching an existing
+	 * database needs one full VACUUM, which rewrites the whole file; it is only recorded
+	 * here and run by the first {@link #reclaimSpace()}, off the startup path.
+	 */
+	private void migrateToIncrementalVacuum() throws SQLException
 	{
-		if (key == null || value == null) return;
-		
 		dbLock.lock();
-		try
+		try (PreparedStatement stmt = connection.prepareStatement(
+			"INSERT OR REPLACE INTO plugin_settings (key, value, updated_at) VALUES (?, 'true', ?)"))
 		{
-			String upsert = """
-				INSERT OR REPLACE INTO plugin_settings (key, value, updated_at)
-				VALUES (?, ?, ?)
-			""";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(upsert))
-			{
-				stmt.setString(1, key);
-				stmt.setString(2, value);
-				stmt.setLong(3, Instant.now().getEpochSecond());
-				stmt.executeUpdate();
-				connection.commit();
-			}
+			stmt.setString(1, VACUUM_PENDING_SETTING);
+			stmt.setLong(2, Instant.now().getEpochSecond());
+			stmt.executeUpdate();
+			setSchemaVersion(7);
+			connection.commit();
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to save setting", e);
-			try
-			{
-				connection.rollback();
-			}
-			catch (SQLException rollbackEx)
-			{
-				log.error("Failed to rollback transaction", rollbackEx);
-			}
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
@@ -356,71 +458,50 @@ public class LocalTradeStorage
 		}
 	}
 
-	public String loadSetting(String key)
+	/**
+	 * Version 8: trade_data holds each trade's {@link TradePayload} bytes as a BLOB, which
+	 * uploads send without parsing. Existing JSON text is converted in place; the declared
+	 * TEXT type of older tables does not matter, since SQLite never coerces a BLOB.
+	 */
+	private void migrateToPayloadBlobs() throws SQLException
 	{
-		if (key == null) return null;
-		
 		dbLock.lock();
-		try
+		try (Statement stmt = connection.createStatement())
 		{
-			String query = "SELECT value FROM plugin_settings WHERE key = ?";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(query))
-			{
-				stmt.setString(1, key);
-				
-				try (ResultSet rs = stmt.executeQuery())
-				{
-					if (rs.next())
-					{
-						return rs.getString("value");
-					}
-				}
-			}
+			int converted = stmt.executeUpdate(
+				"UPDATE pending_trades SET trade_data = CAST(trade_data AS BLOB) WHERE typeof(trade_data) = 'text'");
+			setSchemaVersion(8);
+			connection.commit();
+			log.info("Converted {} pending trades to payload blobs", converted);
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to load setting", e);
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
 			dbLock.unlock();
 		}
-		
-		return null;
 	}
 
-	public void cleanupOldTrades(int maxAgeDays)
+	/**
+	 * Version 9: history partitions are indexed on (item_id, ts) and (account, ts) only.
+	 * The wider indexes they had did not cover any query and made every insert slower.
+	 */
+	private void migrateToNarrowHistoryIndexes() throws SQLException
 	{
 		dbLock.lock();
 		try
 		{
-			long cutoffTime = Instant.now().getEpochSecond() - (maxAgeDays * 24 * 60 * 60);
-			String delete = "DELETE FROM pending_trades WHERE created_at < ?";
-			
-			try (PreparedStatement stmt = connection.prepareStatement(delete))
-			{
-				stmt.setLong(1, cutoffTime);
-				int deleted = stmt.executeUpdate();
-				connection.commit();
-				
-				if (deleted > 0)
-				{
-					log.info("Cleaned up {} old pending trades", deleted);
-				}
-			}
+			TradeHistoryStore.rebuildIndexes(connection);
+			setSchemaVersion(9);
+			connection.commit();
 		}
 		catch (SQLException e)
 		{
-			log.error("Failed to cleanup old trades", e);
-			try
-			{
-				connection.rollback();
-			}
-			catch (SQLException rollbackEx)
-			{
-				log.error("Failed to rollback transaction", rollbackEx);
-			}
+			connection.rollback();
+			throw e;
 		}
 		finally
 		{
@@ -428,41 +509,1365 @@ public class LocalTradeStorage
 		}
 	}
 
-	public int getPendingTradeCount()
+	/**
+	 * Fills the typed columns from trade_data in chunks of BACKFILL_CHUNK_SIZE, one
+	 * transaction each, so a large outbox does not hold one huge write transaction.
+	 *
+	 * Rows that cannot be parsed are quarantined: without an event id they could never be
+	 * acked or released, and their bytes would be sent with every upload. They are marked
+	 * acked with a last_error, so they are never leased and cleanup removes them later.
+	 */
+	private int backfillTypedColumns() throws SQLException
 	{
-		dbLock.lock();
-		try
+		String select = """
+			SELECT id, trade_data FROM pending_trades
+			WHERE event_id IS NULL AND state <> 2 AND id > ?
+			ORDER BY id
+			LIMIT ?
+		""";
+		String update = """
+			UPDATE pending_trades
+			SET event_id = ?, item_id = ?, offer_type = ?, status = ?, trade_timestamp = ?
+			WHERE id = ?
+		""";
+		String quarantine = """
+			UPDATE pending_trades
+			SET state = 2, acked_at = ?, lease_expires_at = NULL, last_error = ?
+			WHERE id = ?
+		""";
+
+		int total = 0;
+		int quarantined = 0;
+		long lastId = 0;
+		long now = Instant.now().getEpochSecond();
+		try (PreparedStatement selectStmt = connection.prepareStatement(select);
+			 PreparedStatement updateStmt = connection.prepareStatement(update);
+			 PreparedStatement quarantineStmt = connection.prepareStatement(quarantine))
 		{
-			String query = "SELECT COUNT(*) FROM pending_trades";
-			
-			try (Statement stmt = connection.createStatement();
-				 ResultSet rs = stmt.executeQuery(query))
+			while (true)
 			{
-				if (rs.next())
+				selectStmt.setLong(1, lastId);
+				selectStmt.setInt(2, BACKFILL_CHUNK_SIZE);
+
+				int rows = 0;
+				try (ResultSet rs = selectStmt.executeQuery())
 				{
-					return rs.getInt(1);
+					while (rs.next())
+					{
+						lastId = rs.getLong("id");
+						rows++;
+
+						TradeEvent trade = parseTrade(rs.getString("trade_data"));
+						if (trade == null || trade.getRuneliteEventId() == null)
+						{
+							log.warn("Quarantining unreadable pending trade row {}", lastId);
+							quarantineStmt.setLong(1, now);
+							quarantineStmt.setString(2, UNREADABLE_TRADE_ERROR);
+							quarantineStmt.setLong(3, lastId);
+							quarantineStmt.addBatch();
+							quarantined++;
+							continue;
+						}
+
+						bindTypedColumns(updateStmt, 1, trade);
+						updateStmt.setLong(6, lastId);
+						updateStmt.addBatch();
+					}
 				}
+
+				if (rows == 0)
+				{
+					break;
+				}
+
+				updateStmt.executeBatch();
+				quarantineStmt.executeBatch();
+				connection.commit();
+				total += rows;
 			}
 		}
-		catch (SQLException e)
+
+		if (quarantined > 0)
 		{
-			log.error("Failed to get pending trade count", e);
+			log.warn("Quarantined {} unreadable pending trades", quarantined);
 		}
-		finally
+		return total - quarantined;
+	}
+
+	private TradeEvent parseTrade(String tradeData)
+	{
+		try
 		{
-			dbLock.unlock();
+			return gson.fromJson(tradeData, TradeEvent.class);
+		}
+		catch (RuntimeException e)
+		{
+			// A malformed field can fail anywhere in the adapter, not only as a JsonParseException
+			log.warn("Skipping unreadable pending trade during migration: {}", e.getMessage());
+			return null;
 		}
-		
-		return 0;
 	}
 
-	public void shutdown()
+	private int getSchemaVersion() throws SQLException
 	{
+		String query = "SELECT version FROM schema_version ORDER BY version DESC LIMIT 1";
+		
+		try (Statement stmt = connection.createStatement();
+			 ResultSet rs = stmt.executeQuery(query))
+		{
+			if (rs.next())
+			{
+				return rs.getInt("version");
+			}
+			else
+			{
+				return 0; // No version set, assume initial
+			}
+		}
+	}
+
+	/**
+	 * Records a finished migration step. Runs inside the step's own transaction and leaves
+	 * the commit to it, so the version never gets ahead of or behind the schema.
+	 */
+	private void setSchemaVersion(int version) throws SQLException
+	{
+		String insert = "INSERT OR REPLACE INTO schema_version (version, applied_at) VALUES (?, ?)";
+		
+		try (PreparedStatement stmt = connection.prepareStatement(insert))
+		{
+			stmt.setInt(1, version);
+			stmt.setLong(2, Instant.now().getEpochSecond());
+			stmt.executeUpdate();
+		}
+	}
+
+	@Override
+	public void savePendingTrade(TradeEvent trade)
+	{
+		if (trade == null) return;
+		
+		// The only time this trade is serialized; outbox, history and uploads share the bytes
+		byte[] payload = TradePayload.encode(trade);
+		dbLock.lock();
+		try
+		{
+			if (connection == null || connection.isClosed())
+			{
+				throw new IllegalStateException("Trade database is closed");
+			}
+			
+			PreparedStatement stmt = writeStatements.prepare(INSERT_PENDING_TRADE);
+			bindInsert(stmt, trade, payload);
+			// A replay is ignored by the outbox and must not reach history either: it may land
+			// in another day's partition, where the per-partition unique index cannot catch it
+			if (stmt.executeUpdate() == 1)
+			{
+				history.append(connection, trade, payload);
+			}
+			connection.commit();
+			
+			log.debug("Saved pending trade to database: {}", trade.getRuneliteEventId());
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to save pending trade {}", trade.getRuneliteEventId(), e);
+			history.reset();
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	/**
+	 * Loads every due trade at once. Fine for small outboxes and tests; use
+	 * {@link #loadPendingTradesAfter} or {@link #iteratePendingTrades} for anything that
+	 * may see a large offline backlog.
+	 */
+	@Override
+	public List<TradeEvent> loadPendingTrades()
+	{
+		List<TradeEvent> trades = new ArrayList<>();
+		
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			String query = """
+				SELECT trade_data, retry_count, next_retry_at 
+				FROM pending_trades
+				WHERE state <> 2 AND (next_retry_at IS NULL OR next_retry_at <= ?)
+				ORDER BY created_at ASC
+			""";
+			
+			PreparedStatement stmt = reader.prepare(query);
+			stmt.setLong(1, Instant.now().getEpochSecond());
+			
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+				{
+					trades.add(TradePayload.decode(rs.getBytes("trade_data")));
+				}
+			}
+			
+			log.debug("Loaded {} pending trades from database", trades.size());
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to load pending trades", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+		
+		return trades;
+	}
+
+	/**
+	 * Keyset page of outbox trades (pending or leased) strictly after the given
+	 * (createdAt, rowId) position, in (created_at, id) order. Pass 0, 0 for the first page
+	 * and the last returned trade's position for the next one. Only the returned rows are
+	 * read.
+	 */
+	public List<PendingTrade> loadPendingTradesAfter(long createdAt, long rowId, int limit)
+	{
+		List<PendingTrade> page = new ArrayList<>();
+		if (limit <= 0) return page;
+
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			String query = """
+				SELECT id, event_id, trade_data, created_at, retry_count
+				FROM pending_trades
+				WHERE (created_at, id) > (?, ?) AND state <> 2
+				ORDER BY created_at ASC, id ASC
+				LIMIT ?
+			""";
+
+			PreparedStatement stmt = reader.prepare(query);
+			stmt.setLong(1, createdAt);
+			stmt.setLong(2, rowId);
+			stmt.setInt(3, limit);
+
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+				{
+					page.add(new PendingTrade(rs.getLong("id"), rs.getLong("created_at"),
+						rs.getInt("retry_count"), rs.getString("event_id"), rs.getBytes("trade_data"), 0));
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to load page of pending trades", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+
+		return page;
+	}
+
+	/**
+	 * Walks the whole outbox (e.g. for export) one page of pageSize rows at a time, so
+	 * memory use does not grow with the backlog. Each page is a separate read; rows
+	 * committed while iterating may or may not be seen.
+	 */
+	public Iterator<PendingTrade> iteratePendingTrades(int pageSize)
+	{
+		return new Iterator<PendingTrade>()
+		{
+			private List<PendingTrade> page = loadPendingTradesAfter(0, 0, pageSize);
+			private int index;
+
+			@Override
+			public boolean hasNext()
+			{
+				if (index < page.size())
+				{
+					return true;
+				}
+				if (page.size() < pageSize)
+				{
+					return false;
+				}
+
+				PendingTrade last = page.get(page.size() - 1);
+				page = loadPendingTradesAfter(last.getCreatedAt(), last.getRowId(), pageSize);
+				index = 0;
+				return !page.isEmpty();
+			}
+
+			@Override
+			public PendingTrade next()
+			{
+				if (!hasNext())
+				{
+					throw new NoSuchElementException();
+				}
+				return page.get(index++);
+			}
+		};
+	}
+
+	/**
+	 * Atomically claims up to limit trades that are due for upload. Claimed rows are
+	 * invisible to other lease calls until they are acknowledged, released, or the lease
+	 * expires (e.g. because the upload never finished).
+	 */
+	@Override
+	public List<PendingTrade> leasePendingTrades(int limit, long leaseSeconds)
+	{
+		List<PendingTrade> leased = new ArrayList<>();
+		if (limit <= 0) return leased;
+		
+		dbLock.lock();
+		try
+		{
+			long now = Instant.now().getEpochSecond();
+			String query = """
+				SELECT id, event_id, trade_data, created_at, retry_count
+				FROM pending_trades
+				WHERE ((state = 0 AND (next_retry_at IS NULL OR next_retry_at <= ?))
+				    OR (state = 1 AND lease_expires_at <= ?))
+				  AND event_id IS NOT NULL
+				ORDER BY created_at ASC, id ASC
+				LIMIT ?
+			""";
+			
+			PreparedStatement stmt = writeStatements.prepare(query);
+			stmt.setLong(1, now);
+			stmt.setLong(2, now);
+			stmt.setInt(3, limit);
+			
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+				{
+					leased.add(new PendingTrade(rs.getLong("id"), rs.getLong("created_at"),
+						rs.getInt("retry_count"), rs.getString("event_id"), rs.getBytes("trade_data"),
+						now + leaseSeconds));
+				}
+			}
+			
+			if (!leased.isEmpty())
+			{
+				String update = "UPDATE pending_trades SET state = 1, lease_expires_at = ? WHERE id = ?";
+				PreparedStatement claim = writeStatements.prepare(update);
+				claim.clearBatch();
+				for (PendingTrade pending : leased)
+				{
+					claim.setLong(1, now + leaseSeconds);
+					claim.setLong(2, pending.getRowId());
+					claim.addBatch();
+				}
+				claim.executeBatch();
+			}
+			connection.commit();
+			
+			log.debug("Leased {} pending trades", leased.size());
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to lease pending trades", e);
+			leased.clear();
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+		
+		return leased;
+	}
+
+	@Override
+	public void removePendingTrade(String runeliteEventId)
+	{
+		if (runeliteEventId == null) return;
+		
+		dbLock.lock();
+		try
+		{
+			PreparedStatement stmt = writeStatements.prepare(DELETE_PENDING_TRADE);
+			stmt.setString(1, runeliteEventId);
+			int deleted = stmt.executeUpdate();
+			connection.commit();
+			
+			if (deleted > 0)
+			{
+				log.debug("Removed pending trade from database: {}", runeliteEventId);
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to remove pending trade", e);
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	public void updateTradeRetryInfo(String runeliteEventId, int retryCount, String lastError, Instant nextRetryAt)
+	{
+		dbLock.lock();
+		try
+		{
+			PreparedStatement stmt = writeStatements.prepare(UPDATE_RETRY_INFO);
+			bindRetryUpdate(stmt, runeliteEventId, retryCount, lastError, nextRetryAt, null);
+			stmt.executeUpdate();
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to update trade retry info", e);
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	/**
+	 * Marks an uploaded trade as acknowledged by the server.
+	 */
+	@Override
+	public void ackPendingTrade(String runeliteEventId)
+	{
+		if (runeliteEventId == null) return;
+		
+		dbLock.lock();
+		try
+		{
+			PreparedStatement stmt = writeStatements.prepare(ACK_PENDING_TRADE);
+			stmt.setLong(1, Instant.now().getEpochSecond());
+			stmt.setString(2, runeliteEventId);
+			stmt.executeUpdate();
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to acknowledge pending trade", e);
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns a leased trade to the pending state without touching its retry schedule.
+	 */
+	@Override
+	public void releasePendingTrade(String runeliteEventId)
+	{
+		if (runeliteEventId == null) return;
+		
+		dbLock.lock();
+		try
+		{
+			PreparedStatement stmt = writeStatements.prepare(RELEASE_PENDING_TRADE);
+			stmt.setString(1, runeliteEventId);
+			stmt.executeUpdate();
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to release pending trade", e);
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	/**
+	 * Deletes all given trades in one batch and one transaction.
+	 */
+	@Override
+	public void removePendingTrades(Collection<String> runeliteEventIds)
+	{
+		executeBulk(DELETE_PENDING_TRADE, runeliteEventIds, (stmt, eventId) -> stmt.setString(1, eventId),
+			"remove pending trades");
+	}
+
+	/**
+	 * Marks all given trades as acknowledged in one batch and one transaction.
+	 */
+	@Override
+	public void ackPendingTrades(Collection<String> runeliteEventIds)
+	{
+		long now = Instant.now().getEpochSecond();
+		executeBulk(ACK_PENDING_TRADE, runeliteEventIds, (stmt, eventId) -> {
+			stmt.setLong(1, now);
+			stmt.setString(2, eventId);
+		}, "acknowledge pending trades");
+	}
+
+	/**
+	 * Applies all retry updates in one batch and one transaction.
+	 */
+	@Override
+	public void updateRetryInfo(Collection<RetryUpdate> updates)
+	{
+		executeBulk(UPDATE_RETRY_INFO, updates, (stmt, update) -> bindRetryUpdate(stmt,
+			update.getRuneliteEventId(), update.getRetryCount(), update.getLastError(), update.getNextRetryAt(),
+			update.getLeaseExpiresAt()),
+			"update retry info");
+	}
+
+	private <T> void executeBulk(String sql, Collection<T> items, StatementBinder<T> binder, String action)
+	{
+		if (items == null || items.isEmpty()) return;
+
+		dbLock.lock();
+		try
+		{
+			PreparedStatement stmt = writeStatements.prepare(sql);
+			stmt.clearBatch();
+			for (T item : items)
+			{
+				if (item == null) continue;
+				binder.bind(stmt, item);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+			connection.commit();
+
+			log.debug("Bulk {}: {} rows", action, items.size());
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to {}", action, e);
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	@FunctionalInterface
+	private interface StatementBinder<T>
+	{
+		void bind(PreparedStatement stmt, T item) throws SQLException;
+	}
+
+	private void bindInsert(PreparedStatement stmt, TradeEvent trade, byte[] payload) throws SQLException
+	{
+		stmt.setBytes(1, payload);
+		stmt.setLong(2, Instant.now().getEpochSecond());
+		bindTypedColumns(stmt, 3, trade);
+	}
+
+	/**
+	 * Binds event_id, item_id, offer_type, status and trade_timestamp starting at index.
+	 */
+	private static void bindTypedColumns(PreparedStatement stmt, int index, TradeEvent trade) throws SQLException
+	{
+		stmt.setString(index, trade.getRuneliteEventId());
+		stmt.setInt(index + 1, trade.getItemId());
+		stmt.setString(index + 2, trade.getOfferType() != null ? trade.getOfferType().getWireName() : null);
+		stmt.setString(index + 3, trade.getStatus() != null ? trade.getStatus().getWireName() : null);
+
+		// Rows written before timestamps were parsed may have none
+		if (trade.getTimestamp() > 0)
+		{
+			stmt.setLong(index + 4, trade.getTimestamp());
+		}
+		else
+		{
+			stmt.setNull(index + 4, Types.INTEGER);
+		}
+	}
+	
+	private void bindRetryUpdate(PreparedStatement stmt, String runeliteEventId, int retryCount,
+		String lastError, Instant nextRetryAt, Long leaseExpiresAt) throws SQLException
+	{
+		stmt.setInt(1, retryCount);
+		stmt.setString(2, lastError);
+		if (nextRetryAt != null)
+		{
+			stmt.setLong(3, nextRetryAt.getEpochSecond());
+		}
+		else
+		{
+			stmt.setNull(3, Types.INTEGER);
+		}
+		stmt.setString(4, runeliteEventId);
+		if (leaseExpiresAt != null)
+		{
+			stmt.setLong(5, leaseExpiresAt);
+		}
+		else
+		{
+			stmt.setNull(5, Types.INTEGER);
+		}
+	}
+	
+	/**
+	 * Switches the async write methods to group commit: writes arriving within windowMillis
+	 * of each other (up to maxBatchSize) are flushed together in one transaction.
+	 */
+	@Override
+	public void enableGroupCommit(long windowMillis, int maxBatchSize)
+	{
+		if (groupCommitWriter == null)
+		{
+			groupCommitWriter = new GroupCommitWriter(this::flushGroup, windowMillis, maxBatchSize);
+			log.info("Group commit enabled ({}ms window, up to {} writes)", windowMillis, maxBatchSize);
+		}
+	}
+	
+	/**
+	 * Persists a trade. The future completes once the trade is durable on disk.
+	 */
+	@Override
+	public CompletableFuture<Void> savePendingTradeAsync(TradeEvent trade)
+	{
+		if (trade == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		GroupCommitWriter writer = groupCommitWriter;
+		if (writer == null)
+		{
+			try
+			{
+				savePendingTrade(trade);
+			}
+			catch (IllegalStateException e)
+			{
+				return CompletableFuture.failedFuture(e);
+			}
+			return CompletableFuture.completedFuture(null);
+		}
+		return writer.submit(GroupCommitWriter.PendingWrite.save(trade, TradePayload.encode(trade)));
+	}
+	
+	public CompletableFuture<Void> removePendingTradeAsync(String runeliteEventId)
+	{
+		if (runeliteEventId == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		GroupCommitWriter writer = groupCommitWriter;
+		if (writer == null)
+		{
+			removePendingTrade(runeliteEventId);
+			return CompletableFuture.completedFuture(null);
+		}
+		return writer.submit(GroupCommitWriter.PendingWrite.remove(runeliteEventId));
+	}
+	
+	public CompletableFuture<Void> updateTradeRetryInfoAsync(String runeliteEventId, int retryCount,
+		String lastError, Instant nextRetryAt)
+	{
+		GroupCommitWriter writer = groupCommitWriter;
+		if (writer == null)
+		{
+			updateTradeRetryInfo(runeliteEventId, retryCount, lastError, nextRetryAt);
+			return CompletableFuture.completedFuture(null);
+		}
+		return writer.submit(GroupCommitWriter.PendingWrite.updateRetry(runeliteEventId, retryCount, lastError, nextRetryAt));
+	}
+	
+	public CompletableFuture<Void> ackPendingTradeAsync(String runeliteEventId)
+	{
+		if (runeliteEventId == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		GroupCommitWriter writer = groupCommitWriter;
+		if (writer == null)
+		{
+			ackPendingTrade(runeliteEventId);
+			return CompletableFuture.completedFuture(null);
+		}
+		return writer.submit(GroupCommitWriter.PendingWrite.ack(runeliteEventId));
+	}
+	
+	@Override
+	public CompletableFuture<Void> releasePendingTradeAsync(String runeliteEventId)
+	{
+		if (runeliteEventId == null)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		GroupCommitWriter writer = groupCommitWriter;
+		if (writer == null)
+		{
+			releasePendingTrade(runeliteEventId);
+			return CompletableFuture.completedFuture(null);
+		}
+		return writer.submit(GroupCommitWriter.PendingWrite.release(runeliteEventId));
+	}
+	
+	private void flushGroup(List<GroupCommitWriter.PendingWrite> writes) throws SQLException
+	{
+		dbLock.lock();
+		try
+		{
+			PreparedStatement insert = writeStatements.prepare(INSERT_PENDING_TRADE);
+			PreparedStatement update = writeStatements.prepare(UPDATE_RETRY_INFO);
+			PreparedStatement release = writeStatements.prepare(RELEASE_PENDING_TRADE);
+			PreparedStatement ack = writeStatements.prepare(ACK_PENDING_TRADE);
+			PreparedStatement delete = writeStatements.prepare(DELETE_PENDING_TRADE);
+			// A flush that failed midway can leave rows batched on the cached statements
+			clearBatches(insert, update, release, ack, delete);
+			
+			long now = Instant.now().getEpochSecond();
+			int inserts = 0;
+			int updates = 0;
+			int releases = 0;
+			int acks = 0;
+			int deletes = 0;
+			for (GroupCommitWriter.PendingWrite write : writes)
+			{
+				switch (write.getKind())
+				{
+					case SAVE:
+						bindInsert(insert, write.getTrade(), write.getPayload());
+						insert.addBatch();
+						inserts++;
+						break;
+					case UPDATE_RETRY:
+						bindRetryUpdate(update, write.getRuneliteEventId(), write.getRetryCount(),
+							write.getLastError(), write.getNextRetryAt(), null);
+						update.addBatch();
+						updates++;
+						break;
+					case RELEASE:
+						release.setString(1, write.getRuneliteEventId());
+						release.addBatch();
+						releases++;
+						break;
+					case ACK:
+						ack.setLong(1, now);
+						ack.setString(2, write.getRuneliteEventId());
+						ack.addBatch();
+						acks++;
+						break;
+					case REMOVE:
+						delete.setString(1, write.getRuneliteEventId());
+						delete.addBatch();
+						deletes++;
+						break;
+				}
+			}
+			
+			// Inserts first so a trade saved and acknowledged in the same group ends up removed
+			if (inserts > 0)
+			{
+				// Batch counts are in insert order; only rows that were actually inserted go to history
+				int[] inserted = insert.executeBatch();
+				int row = 0;
+				for (GroupCommitWriter.PendingWrite write : writes)
+				{
+					if (write.getKind() == GroupCommitWriter.Kind.SAVE && inserted[row++] > 0)
+					{
+						history.append(connection, write.getTrade(), write.getPayload());
+					}
+				}
+			}
+			if (updates > 0)
+			{
+				update.executeBatch();
+			}
+			if (releases > 0)
+			{
+				release.executeBatch();
+			}
+			if (acks > 0)
+			{
+				ack.executeBatch();
+			}
+			if (deletes > 0)
+			{
+				delete.executeBatch();
+			}
+			connection.commit();
+			
+			log.debug("Group committed {} inserts, {} retry updates, {} releases, {} acks, {} deletes",
+				inserts, updates, releases, acks, deletes);
+		}
+		catch (SQLException e)
+		{
+			history.reset();
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+			throw e;
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	private static void clearBatches(PreparedStatement... statements) throws SQLException
+	{
+		for (PreparedStatement stmt : statements)
+		{
+			stmt.clearBatch();
+		}
+	}
+
+	public void saveSetting(String key, String value)
+	{
+		if (key == null || value == null) return;
+		
+		dbLock.lock();
+		try
+		{
+			String upsert = """
+				INSERT OR REPLACE INTO plugin_settings (key, value, updated_at)
+				VALUES (?, ?, ?)
+			""";
+			
+			PreparedStatement stmt = writeStatements.prepare(upsert);
+			stmt.setString(1, key);
+			stmt.setString(2, value);
+			stmt.setLong(3, Instant.now().getEpochSecond());
+			stmt.executeUpdate();
+			connection.commit();
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to save setting", e);
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	public String loadSetting(String key)
+	{
+		if (key == null) return null;
+		
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			String query = "SELECT value FROM plugin_settings WHERE key = ?";
+			
+			PreparedStatement stmt = reader.prepare(query);
+			stmt.setString(1, key);
+			
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				if (rs.next())
+				{
+					return rs.getString("value");
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to load setting", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+		
+		return null;
+	}
+
+	/**
+	 * Loads every setting whose key starts with prefix, keyed by the full key.
+	 */
+	public Map<String, String> loadSettingsWithPrefix(String prefix)
+	{
+		Map<String, String> settings = new HashMap<>();
+		if (prefix == null) return settings;
+		
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			// GLOB rather than LIKE, which would treat the underscores in our keys as wildcards
+			PreparedStatement stmt = reader.prepare("SELECT key, value FROM plugin_settings WHERE key GLOB ?");
+			stmt.setString(1, prefix + "*");
+			
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+				{
+					settings.put(rs.getString("key"), rs.getString("value"));
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to load settings", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+		
+		return settings;
+	}
+
+	/**
+	 * Deletes expired rows (never uploaded within maxAgeDays, or acknowledged long enough
+	 * ago) CLEANUP_CHUNK_SIZE at a time, one short transaction each. The lock is released
+	 * between chunks so saves and leases are never held up behind a big delete.
+	 */
+	@Override
+	public void cleanupOldTrades(int maxAgeDays)
+	{
+		long startNanos = System.nanoTime();
+		long now = Instant.now().getEpochSecond();
+		long cutoffTime = now - (maxAgeDays * 24L * 60 * 60);
+		String delete = """
+			DELETE FROM pending_trades WHERE id IN (
+				SELECT id FROM pending_trades
+				WHERE created_at < ? OR (state = 2 AND acked_at < ?)
+				LIMIT ?
+			)
+		""";
+
+		int total = 0;
+		int deleted;
+		do
+		{
+			deleted = 0;
+			dbLock.lock();
+			try
+			{
+				PreparedStatement stmt = writeStatements.prepare(delete);
+				stmt.setLong(1, cutoffTime);
+				stmt.setLong(2, now - ACKED_RETENTION_SECONDS);
+				stmt.setInt(3, CLEANUP_CHUNK_SIZE);
+				deleted = stmt.executeUpdate();
+				connection.commit();
+				total += deleted;
+			}
+			catch (SQLException e)
+			{
+				log.error("Failed to cleanup old trades", e);
+				try
+				{
+					connection.rollback();
+				}
+				catch (SQLException rollbackEx)
+				{
+					log.error("Failed to rollback transaction", rollbackEx);
+				}
+				break;
+			}
+			finally
+			{
+				dbLock.unlock();
+			}
+			Thread.yield();
+		}
+		while (deleted == CLEANUP_CHUNK_SIZE);
+
+		if (total > 0)
+		{
+			log.info("Cleaned up {} old pending trades in {}ms", total,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		}
+	}
+
+	/**
+	 * Returns free pages to the file system with incremental_vacuum, VACUUM_CHUNK_PAGES at a
+	 * time with the lock released in between, then lets SQLite refresh its planner
+	 * statistics with PRAGMA optimize. Meant for the background maintenance task after
+	 * cleanup has freed pages.
+	 */
+	public MaintenanceReport reclaimSpace()
+	{
+		long startNanos = System.nanoTime();
+		long bytesBefore = 0;
+		long bytesAfter = 0;
+
+		try
+		{
+			bytesBefore = databaseSizeBytes();
+			if (loadSetting(VACUUM_PENDING_SETTING) != null)
+			{
+				convertToIncrementalVacuum(bytesBefore);
+			}
+
+			int freed;
+			do
+			{
+				freed = incrementalVacuum(VACUUM_CHUNK_PAGES);
+				Thread.yield();
+			}
+			while (freed == VACUUM_CHUNK_PAGES);
+
+			dbLock.lock();
+			try (Statement stmt = connection.createStatement())
+			{
+				stmt.execute("PRAGMA optimize");
+				connection.commit();
+			}
+			finally
+			{
+				dbLock.unlock();
+			}
+			bytesAfter = databaseSizeBytes();
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to reclaim database space", e);
+			bytesAfter = bytesBefore;
+		}
+
+		MaintenanceReport report = new MaintenanceReport(Math.max(0, bytesBefore - bytesAfter),
+			TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+		log.info("Database maintenance reclaimed {} bytes in {}ms", report.getBytesReclaimed(), report.getElapsedMillis());
+		return report;
+	}
+
+	/**
+	 * The one full VACUUM that applies auto_vacuum=INCREMENTAL to a database from before
+	 * version 7. It rewrites the whole file, so it runs in background maintenance on a
+	 * connection of its own without dbLock: writers wait on SQLite's lock for at most
+	 * BUSY_TIMEOUT_MILLIS instead of on ours for the whole rewrite. Files too large to
+	 * rewrite within that time are left as they are; incremental vacuum then only
+	 * applies to databases created from now on.
+	 */
+	private void convertToIncrementalVacuum(long databaseBytes) throws SQLException
+	{
+		long startNanos = System.nanoTime();
+		// A fresh connection is in autocommit mode, which VACUUM needs
+		try (Connection vacuumConnection = createConfig(false).createConnection(databaseUrl());
+			 Statement stmt = vacuumConnection.createStatement())
+		{
+			if (databaseBytes > VACUUM_CONVERSION_MAX_BYTES)
+			{
+				log.info("Database is {} bytes, keeping auto-vacuum off instead of rewriting it", databaseBytes);
+			}
+			else
+			{
+				stmt.execute("PRAGMA auto_vacuum = INCREMENTAL");
+				stmt.execute("VACUUM");
+				log.info("Switched database to incremental auto-vacuum in {}ms",
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+			}
+			stmt.execute("DELETE FROM plugin_settings WHERE key = '" + VACUUM_PENDING_SETTING + "'");
+		}
+	}
+
+	/**
+	 * @return number of pages freed, at most maxPages
+	 */
+	private int incrementalVacuum(int maxPages) throws SQLException
+	{
+		dbLock.lock();
+		try (Statement stmt = connection.createStatement())
+		{
+			long before = pragmaLong(stmt, "freelist_count");
+			// The pragma only frees pages as it is stepped, so drain its result set
+			try (ResultSet rs = stmt.executeQuery("PRAGMA incremental_vacuum(" + maxPages + ")"))
+			{
+				while (rs.next())
+				{
+					// Nothing to read
+				}
+			}
+			connection.commit();
+			return (int) (before - pragmaLong(stmt, "freelist_count"));
+		}
+		catch (SQLException e)
+		{
+			connection.rollback();
+			throw e;
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	private long databaseSizeBytes() throws SQLException
+	{
+		dbLock.lock();
+		try (Statement stmt = connection.createStatement())
+		{
+			return pragmaLong(stmt, "page_count") * pragmaLong(stmt, "page_size");
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	private static long pragmaLong(Statement stmt, String pragma) throws SQLException
+	{
+		try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma))
+		{
+			return rs.next() ? rs.getLong(1) : 0;
+		}
+	}
+
+	/**
+	 * Local trade history between from (inclusive) and to (exclusive), oldest first.
+	 * itemId and account are optional filters. Served from the day partitions without
+	 * contacting the server.
+	 */
+	public List<TradeEvent> loadTradeHistory(Integer itemId, String account, Instant from, Instant to)
+	{
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			return history.query(reader.getConnection(), itemId, account, from.toEpochMilli(), to.toEpochMilli());
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to load trade history", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+
+		return new ArrayList<>();
+	}
+
+	/**
+	 * Drops history partitions for days older than retentionDays (UTC).
+	 *
+	 * @return number of partitions dropped
+	 */
+	public int compactTradeHistory(int retentionDays)
+	{
+		dbLock.lock();
+		try
+		{
+			LocalDate cutoff = LocalDate.now(ZoneOffset.UTC).minusDays(retentionDays);
+			int dropped = history.dropPartitionsBefore(connection, cutoff);
+			connection.commit();
+
+			if (dropped > 0)
+			{
+				log.info("Dropped {} expired trade history partitions", dropped);
+			}
+			return dropped;
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to compact trade history", e);
+			history.reset();
+			try
+			{
+				connection.rollback();
+			}
+			catch (SQLException rollbackEx)
+			{
+				log.error("Failed to rollback transaction", rollbackEx);
+			}
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+
+		return 0;
+	}
+
+	@Override
+	public int getPendingTradeCount()
+	{
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			String query = "SELECT COUNT(*) FROM pending_trades WHERE state IN (0, 1)";
+			
+			try (ResultSet rs = reader.prepare(query).executeQuery())
+			{
+				if (rs.next())
+				{
+					return rs.getInt(1);
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to get pending trade count", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+		
+		return 0;
+	}
+
+	/**
+	 * Earliest time (epoch seconds) at which a trade becomes eligible for leasing: a
+	 * pending trade's next_retry_at (now if it has none) or a leased trade's lease expiry.
+	 *
+	 * @return the earliest due time, or null if the outbox is empty
+	 */
+	@Override
+	public Long getNextDueAt()
+	{
+		StatementCache reader = null;
+		try
+		{
+			reader = readPool.acquire();
+			String query = """
+				SELECT MIN(CASE WHEN state = 0 THEN COALESCE(next_retry_at, 0) ELSE lease_expires_at END)
+				FROM pending_trades
+				WHERE state IN (0, 1)
+			""";
+
+			try (ResultSet rs = reader.prepare(query).executeQuery())
+			{
+				if (rs.next())
+				{
+					long dueAt = rs.getLong(1);
+					return rs.wasNull() ? null : dueAt;
+				}
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to get next due time", e);
+		}
+		finally
+		{
+			readPool.release(reader);
+		}
+
+		return null;
+	}
+
+	@Override
+	public void open()
+	{
+		dbLock.lock();
+		try
+		{
+			if (connection == null || connection.isClosed())
+			{
+				history.reset();
+				initializeDatabase();
+			}
+		}
+		catch (SQLException e)
+		{
+			log.error("Failed to reopen database", e);
+			throw new RuntimeException("Database initialization failed", e);
+		}
+		finally
+		{
+			dbLock.unlock();
+		}
+	}
+
+	@Override
+	public void shutdown()
+	{
+		// Flush outstanding group commits before the connection goes away
+		GroupCommitWriter writer = groupCommitWriter;
+		if (writer != null)
+		{
+			groupCommitWriter = null;
+			writer.shutdown();
+		}
+		
+		if (readPool != null)
+		{
+			readPool.close();
+		}
+		
 		dbLock.lock();
 		try
 		{
 			if (connection != null && !connection.isClosed())
 			{
+				history.close();
+				writeStatements.close();
 				connection.close();
 				log.info("Database connection closed");
 			}
@@ -0,0 +1,13 @@
+package com.gemetrics.plugin;
+
+import lombok.Value;
+
+/**
+ * Outcome of a {@link LocalTradeStorage#reclaimSpace()} run.
+ */
+@Value
+public class MaintenanceReport
+{
+	long bytesReclaimed;
+	long elapsedMillis;
+}
@@ -0,0 +1,376 @@
+package com.gemetrics.plugin;
+
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.api.GameState;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Remembers the last observed state of every Grand Exchange slot so that only real
+ * changes are turned into trade events.
+ *
+ * RuneLite replays all slots on every login and world hop; without this table each
+ * replay would be tracked, persisted and uploaded again as a brand new trade.
+ *
+ * The table is only touched in memory on the client thread; the database is only ever
+ * used from the I/O executor. Saved snapshots are read ahead of time by {@link #start}.
+ * If an account logs in before that read has finished, its offers are held back and handed
+ * out by {@link #finishRestore} once the saved slots are in place. Every change is written
+ * back, so a crash loses at most the writes still queued on the executor.
+ */
+@Slf4j
+@Singleton
+public class OfferStateTracker
+{
+	public static final int SLOT_COUNT = 8;
+	private static final long NO_ACCOUNT = -1L;
+	private static final String SNAPSHOT_KEY_PREFIX = "offer_slots_";
+
+	@Inject
+	private LocalTradeStorage localStorage;
+
+	// Runs snapshot reads and writes; inline until start() hands over a background executor
+	private volatile Executor ioExecutor = Runnable::run;
+	// Latest snapshot per account, filled in the background by start() and kept current by saves
+	private final Map<Long, String> snapshots = new ConcurrentHashMap<>();
+	private volatile boolean snapshotsLoaded;
+	private volatile Runnable onSnapshotsLoaded = () -> {};
+	// Accounts whose snapshot changed since it was last written; a burst of changes shares one write
+	private final Set<Long> unsavedAccounts = ConcurrentHashMap.newKeySet();
+	private final AtomicBoolean writeQueued = new AtomicBoolean();
+
+	// Set while the current account's saved slots are still being read
+	private boolean restorePending;
+	private final List<HeldOffer> heldOffers = new ArrayList<>();
+
+	private final boolean[] known = new boolean[SLOT_COUNT];
+	private final int[] itemIds = new int[SLOT_COUNT];
+	private final int[] prices = new int[SLOT_COUNT];
+	private final int[] totalQuantities = new int[SLOT_COUNT];
+	private final int[] quantities = new int[SLOT_COUNT];
+	private final int[] spent = new int[SLOT_COUNT];
+	private final GrandExchangeOfferState[] states = new GrandExchangeOfferState[SLOT_COUNT];
+	private final int[] generations = new int[SLOT_COUNT];
+	private long accountHash = NO_ACCOUNT;
+
+	/**
+	 * An offer change that was held back while the account's saved slots were loading.
+	 */
+	@Value
+	public static class SlotChange
+	{
+		int slot;
+		GrandExchangeOffer offer;
+		int offerGeneration;
+	}
+
+	@Value
+	private static class HeldOffer
+	{
+		int slot;
+		// The client builds a new offer object for every update, so holding on to it is safe
+		GrandExchangeOffer offer;
+		GameState gameState;
+	}
+
+	/**
+	 * Records the offer for a slot and reports whether it differs from what was last seen.
+	 *
+	 * @return true if the offer is a genuine change that should be tracked
+	 */
+	public synchronized boolean update(int slot, GrandExchangeOffer offer, GameState gameState)
+	{
+		if (offer == null || slot < 0 || slot >= SLOT_COUNT)
+		{
+			return false;
+		}
+
+		if (restorePending)
+		{
+			// Without the saved slots a replay cannot be told apart from a change yet
+			heldOffers.add(new HeldOffer(slot, offer, gameState));
+			return false;
+		}
+
+		GrandExchangeOfferState state = offer.getState();
+
+		// While logging in the client reports every slot as EMPTY before sending the real
+		// offers; those placeholders must not overwrite what we remember about the slot
+		if (state == GrandExchangeOfferState.EMPTY && gameState != GameState.LOGGED_IN)
+		{
+			return false;
+		}
+
+		if (known[slot]
+			&& states[slot] == state
+			&& itemIds[slot] == offer.getItemId()
+			&& prices[slot] == offer.getPrice()
+			&& totalQuantities[slot] == offer.getTotalQuantity()
+			&& quantities[slot] == offer.getQuantitySold()
+			&& spent[slot] == offer.getSpent())
+		{
+			return false;
+		}
+
+		if (known[slot] && replacesOffer(slot, offer))
+		{
+			generations[slot]++;
+		}
+
+		known[slot] = true;
+		states[slot] = state;
+		itemIds[slot] = offer.getItemId();
+		prices[slot] = offer.getPrice();
+		totalQuantities[slot] = offer.getTotalQuantity();
+		quantities[slot] = offer.getQuantitySold();
+		spent[slot] = offer.getSpent();
+		saveSnapshot();
+
+		// A slot being collected or cleared is remembered but is not a trade
+		return state != GrandExchangeOfferState.EMPTY;
+	}
+
+	/**
+	 * Returns how many offers have followed one another in the slot since it was first seen.
+	 * Together with the offer contents this tells apart two otherwise identical offers
+	 * placed one after another in the same slot.
+	 *
+	 * The counter only moves when a slot we already know is seen holding a new offer, and
+	 * is saved with the snapshot. Seeing the same slots again never changes it, so the
+	 * event ids derived from it do not depend on when or how often the client looked.
+	 */
+	public synchronized int getOfferGeneration(int slot)
+	{
+		return slot >= 0 && slot < SLOT_COUNT ? generations[slot] : 0;
+	}
+
+	// The slot was cleared, or its offer was swapped for another while we were not watching
+	private boolean replacesOffer(int slot, GrandExchangeOffer offer)
+	{
+		return states[slot] == GrandExchangeOfferState.EMPTY
+			|| itemIds[slot] != offer.getItemId()
+			|| prices[slot] != offer.getPrice()
+			|| totalQuantities[slot] != offer.getTotalQuantity()
+			|| quantities[slot] > offer.getQuantitySold();
+	}
+
+	/**
+	 * Reads every saved snapshot on ioExecutor, which is also used for all later writes.
+	 * onSnapshotsLoaded runs on ioExecutor once the read is done; it should get
+	 * {@link #finishRestore} called on the client thread.
+	 */
+	public void start(Executor ioExecutor, Runnable onSnapshotsLoaded)
+	{
+		this.ioExecutor = ioExecutor;
+		this.onSnapshotsLoaded = onSnapshotsLoaded;
+		ioExecutor.execute(this::loadSnapshots);
+	}
+
+	private void loadSnapshots()
+	{
+		try
+		{
+			if (localStorage == null)
+			{
+				return;
+			}
+
+			for (Map.Entry<String, String> saved : localStorage.loadSettingsWithPrefix(SNAPSHOT_KEY_PREFIX).entrySet())
+			{
+				try
+				{
+					long account = Long.parseLong(saved.getKey().substring(SNAPSHOT_KEY_PREFIX.length()));
+					// A save made while this was loading is newer than what is on disk
+					snapshots.putIfAbsent(account, saved.getValue());
+				}
+				catch (NumberFormatException e)
+				{
+					log.warn("Ignoring offer slot snapshot with unexpected key {}", saved.getKey());
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			log.error("Failed to load offer slot snapshots", e);
+		}
+		finally
+		{
+			// Held back offers are released even if the read failed; they are then all new
+			snapshotsLoaded = true;
+			onSnapshotsLoaded.run();
+		}
+	}
+
+	/**
+	 * Restores the current account's saved slots if that had to wait for {@link #start},
+	 * and replays the offers held back meanwhile. Returns those that are genuine changes,
+	 * in the order they arrived. Call on the client thread.
+	 */
+	public synchronized List<SlotChange> finishRestore()
+	{
+		if (!restorePending || !snapshotsLoaded)
+		{
+			return Collections.emptyList();
+		}
+
+		restorePending = false;
+		loadSnapshot();
+
+		List<SlotChange> changes = new ArrayList<>();
+		for (HeldOffer held : heldOffers)
+		{
+			if (update(held.getSlot(), held.getOffer(), held.getGameState()))
+			{
+				changes.add(new SlotChange(held.getSlot(), held.getOffer(), generations[held.getSlot()]));
+			}
+		}
+		heldOffers.clear();
+		return changes;
+	}
+
+	/**
+	 * Switches the slot table to another account, saving the current one first.
+	 * Called as soon as the account is known so that replays for it are recognised.
+	 */
+	public synchronized void switchAccount(long newAccountHash)
+	{
+		if (newAccountHash == NO_ACCOUNT || newAccountHash == accountHash)
+		{
+			return;
+		}
+
+		saveSnapshot();
+		reset();
+		accountHash = newAccountHash;
+		if (localStorage != null && !snapshotsLoaded)
+		{
+			restorePending = true;
+			return;
+		}
+		loadSnapshot();
+	}
+
+	/**
+	 * Persists the slot table for the current account. Changes are saved as they are seen;
+	 * this is for places like logout that want to be sure. The write itself happens on the
+	 * I/O executor.
+	 */
+	public synchronized void saveSnapshot()
+	{
+		// While restoring, the table is still empty and would overwrite the saved slots
+		if (accountHash == NO_ACCOUNT || restorePending)
+		{
+			return;
+		}
+
+		StringBuilder snapshot = new StringBuilder();
+		for (int slot = 0; slot < SLOT_COUNT; slot++)
+		{
+			if (slot > 0)
+			{
+				snapshot.append(';');
+			}
+
+			if (known[slot])
+			{
+				snapshot.append(states[slot].name()).append(',')
+					.append(itemIds[slot]).append(',')
+					.append(prices[slot]).append(',')
+					.append(totalQuantities[slot]).append(',')
+					.append(quantities[slot]).append(',')
+					.append(spent[slot]).append(',')
+					.append(generations[slot]);
+			}
+		}
+
+		snapshots.put(accountHash, snapshot.toString());
+		if (localStorage != null)
+		{
+			unsavedAccounts.add(accountHash);
+			if (writeQueued.compareAndSet(false, true))
+			{
+				ioExecutor.execute(this::writeSnapshots);
+			}
+		}
+	}
+
+	private void writeSnapshots()
+	{
+		// Cleared first, so a change made during the writes queues another round
+		writeQueued.set(false);
+		for (Iterator<Long> it = unsavedAccounts.iterator(); it.hasNext(); )
+		{
+			long account = it.next();
+			it.remove();
+			localStorage.saveSetting(SNAPSHOT_KEY_PREFIX + account, snapshots.get(account));
+		}
+	}
+
+	public synchronized void reset()
+	{
+		restorePending = false;
+		heldOffers.clear();
+		for (int slot = 0; slot < SLOT_COUNT; slot++)
+		{
+			known[slot] = false;
+			states[slot] = null;
+			generations[slot] = 0;
+		}
+	}
+
+	private void loadSnapshot()
+	{
+		if (accountHash == NO_ACCOUNT)
+		{
+			return;
+		}
+
+		String snapshot = snapshots.get(accountHash);
+		if (snapshot == null || snapshot.isEmpty())
+		{
+			return;
+		}
+
+		try
+		{
+			String[] slots = snapshot.split(";", -1);
+			for (int slot = 0; slot < SLOT_COUNT && slot < slots.length; slot++)
+			{
+				if (slots[slot].isEmpty())
+				{
+					continue;
+				}
+
+				String[] fields = slots[slot].split(",");
+				states[slot] = GrandExchangeOfferState.valueOf(fields[0]);
+				itemIds[slot] = Integer.parseInt(fields[1]);
+				prices[slot] = Integer.parseInt(fields[2]);
+				totalQuantities[slot] = Integer.parseInt(fields[3]);
+				quantities[slot] = Integer.parseInt(fields[4]);
+				spent[slot] = Integer.parseInt(fields[5]);
+				// Older snapshots kept a start time here; those offers count as the first one
+				long generation = fields.length > 6 ? Long.parseLong(fields[6]) : 0L;
+				generations[slot] = generation <= Integer.MAX_VALUE ? (int) generation : 0;
+				known[slot] = true;
+			}
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("Ignoring unreadable offer slot snapshot: {}", e.getMessage());
+			reset();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package com.gemetrics.plugin;
+
+import lombok.Value;
+
+/**
+ * A trade leased from the outbox, together with the row metadata the sync loop needs.
+ *
+ * The trade is carried as the payload encoded when it was saved; uploads send those bytes
+ * as they are.
+ */
+@Value
+public class PendingTrade
+{
+	long rowId;
+	long createdAt;
+	int retryCount;
+	String runeliteEventId;
+	byte[] payload;
+	// Epoch seconds at which the lease this trade was handed out under ends; 0 when not leased
+	long leaseExpiresAt;
+
+	/**
+	 * Decodes the payload. Plain JSON uploads never need this.
+	 */
+	public TradeEvent getTrade()
+	{
+		return TradePayload.decode(payload);
+	}
+}
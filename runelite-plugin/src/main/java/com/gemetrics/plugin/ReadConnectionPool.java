@@ -0,0 +1,138 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small fixed pool of read-only SQLite connections.
+ *
+ * With the database in WAL mode, readers see the last committed snapshot and never wait
+ * for the writer connection (or its lock), so UI and status queries stay responsive while
+ * a large write transaction is in progress. Readers only ever wait for each other.
+ *
+ * Each connection comes with its own {@link StatementCache}, which is only touched by the
+ * reader currently holding it.
+ */
+@Slf4j
+public class ReadConnectionPool
+{
+	// Long enough for any read to finish; only hit if the pool is leaking or wedged
+	private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+	private final BlockingQueue<StatementCache> idle;
+	private final List<StatementCache> all;
+	private volatile boolean closed;
+
+	/**
+	 * @param config connection settings; should be read-only and must not try to change
+	 *               the journal mode, which needs write access
+	 */
+	public ReadConnectionPool(String dbUrl, SQLiteConfig config, int size) throws SQLException
+	{
+		this.idle = new ArrayBlockingQueue<>(size);
+		this.all = new ArrayList<>(size);
+
+		try
+		{
+			for (int i = 0; i < size; i++)
+			{
+				StatementCache reader = new StatementCache(config.createConnection(dbUrl));
+				all.add(reader);
+				idle.add(reader);
+			}
+		}
+		catch (SQLException e)
+		{
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Takes a connection, waiting up to ACQUIRE_TIMEOUT_SECONDS for another reader to
+	 * return one if all are busy. Must be handed back with {@link #release(StatementCache)}.
+	 *
+	 * @throws SQLException if the pool is closed or no connection came back in time
+	 */
+	public StatementCache acquire() throws SQLException
+	{
+		if (closed)
+		{
+			throw new SQLException("Read connection pool is closed");
+		}
+
+		StatementCache reader;
+		try
+		{
+			reader = idle.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a read connection", e);
+		}
+
+		if (reader == null)
+		{
+			throw new SQLException(closed
+				? "Read connection pool is closed"
+				: "Timed out waiting for a read connection");
+		}
+		return reader;
+	}
+
+	/**
+	 * Hands a connection back, or closes it if the pool was closed while it was out.
+	 */
+	public void release(StatementCache reader)
+	{
+		if (reader == null)
+		{
+			return;
+		}
+
+		if (closed)
+		{
+			closeReader(reader);
+		}
+		else
+		{
+			idle.offer(reader);
+		}
+	}
+
+	/**
+	 * Closes every connection. Connections still held by readers are closed under them;
+	 * further acquires fail instead of waiting.
+	 */
+	public void close()
+	{
+		closed = true;
+		for (StatementCache reader : all)
+		{
+			closeReader(reader);
+		}
+		all.clear();
+		idle.clear();
+	}
+
+	private static void closeReader(StatementCache reader)
+	{
+		reader.close();
+		try
+		{
+			reader.getConnection().close();
+		}
+		catch (SQLException e)
+		{
+			log.error("Error closing read connection", e);
+		}
+	}
+}
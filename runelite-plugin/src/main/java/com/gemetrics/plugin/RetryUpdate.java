@@ -0,0 +1,31 @@
+package com.gemetrics.plugin;
+
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * New retry state for one outbox row, applied in bulk by
+ * {@link LocalTradeStorage#updateRetryInfo(java.util.Collection)}.
+ *
+ * Only applies while the trade is still leased. When leaseExpiresAt is set it must also match
+ * the lease the trade is held under, so a late failure from an expired lease cannot reschedule
+ * a trade that was re-leased and acknowledged in the meantime.
+ */
+@Value
+@AllArgsConstructor
+public class RetryUpdate
+{
+	String runeliteEventId;
+	int retryCount;
+	String lastError;
+	Instant nextRetryAt;
+	// Lease the failed upload was made under, or null to accept any current lease
+	Long leaseExpiresAt;
+
+	public RetryUpdate(String runeliteEventId, int retryCount, String lastError, Instant nextRetryAt)
+	{
+		this(runeliteEventId, retryCount, lastError, nextRetryAt, null);
+	}
+}
@@ -0,0 +1,69 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Prepared statements for one connection, keyed by SQL text, so SQLite parses and plans
+ * each statement once per connection instead of on every call.
+ *
+ * Not thread-safe: the owner of the connection must serialise access (dbLock for the
+ * writer, the read pool for readers). Statements handed out must not be closed by the
+ * caller; their ResultSets still must be.
+ */
+@Slf4j
+public class StatementCache
+{
+	private final Connection connection;
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+	public StatementCache(Connection connection)
+	{
+		this.connection = connection;
+	}
+
+	public Connection getConnection()
+	{
+		return connection;
+	}
+
+	public PreparedStatement prepare(String sql) throws SQLException
+	{
+		PreparedStatement stmt = statements.get(sql);
+		if (stmt == null || stmt.isClosed())
+		{
+			stmt = connection.prepareStatement(sql);
+			statements.put(sql, stmt);
+		}
+		return stmt;
+	}
+
+	public int size()
+	{
+		return statements.size();
+	}
+
+	/**
+	 * Closes every cached statement. The connection itself is left open.
+	 */
+	public void close()
+	{
+		for (PreparedStatement stmt : statements.values())
+		{
+			try
+			{
+				stmt.close();
+			}
+			catch (SQLException e)
+			{
+				log.error("Error closing cached statement", e);
+			}
+		}
+		statements.clear();
+	}
+}
@@ -0,0 +1,177 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the sync task exactly when the earliest piece of work becomes due instead of
+ * polling on a fixed interval.
+ *
+ * Per-trade due times live in the outbox (next_retry_at / lease_expires_at), so only the
+ * single earliest wake-up needs to be armed here; asking for a later one while an earlier
+ * one is pending is a no-op. A hold (e.g. from Retry-After) pushes every wake-up back
+ * until the server is willing to take requests again.
+ */
+@Slf4j
+public class SyncScheduler
+{
+	// Exponential backoff per attempt: 30s, 1m, 2m, 4m, 8m
+	private static final long BASE_BACKOFF_SECONDS = 30;
+	private static final int MAX_BACKOFF_EXPONENT = 4;
+
+	private final ScheduledExecutorService executor;
+	private final Runnable task;
+
+	private ScheduledFuture<?> pendingWake;
+	private long pendingWakeAtMillis = Long.MAX_VALUE;
+	private long holdUntilMillis;
+
+	public SyncScheduler(ScheduledExecutorService executor, Runnable task)
+	{
+		this.executor = executor;
+		this.task = task;
+	}
+
+	/**
+	 * Makes sure the task runs no later than atMillis (but not before any active hold).
+	 */
+	public synchronized void scheduleAt(long atMillis)
+	{
+		long wakeAt = Math.max(atMillis, holdUntilMillis);
+		if (pendingWake != null && pendingWakeAtMillis <= wakeAt)
+		{
+			return;
+		}
+
+		if (pendingWake != null)
+		{
+			pendingWake.cancel(false);
+		}
+
+		long delayMillis = Math.max(0, wakeAt - System.currentTimeMillis());
+		try
+		{
+			pendingWake = executor.schedule(this::wake, delayMillis, TimeUnit.MILLISECONDS);
+			pendingWakeAtMillis = wakeAt;
+			log.debug("Next sync in {}ms", delayMillis);
+		}
+		catch (RejectedExecutionException e)
+		{
+			// Shutting down
+			pendingWake = null;
+			pendingWakeAtMillis = Long.MAX_VALUE;
+		}
+	}
+
+	public void scheduleNow()
+	{
+		scheduleAt(System.currentTimeMillis());
+	}
+
+	/**
+	 * Defers all wake-ups until untilMillis. A later hold replaces an earlier one.
+	 */
+	public synchronized void holdUntil(long untilMillis)
+	{
+		if (untilMillis <= holdUntilMillis)
+		{
+			return;
+		}
+
+		holdUntilMillis = untilMillis;
+		if (pendingWake != null && pendingWakeAtMillis < untilMillis)
+		{
+			pendingWake.cancel(false);
+			pendingWake = null;
+			pendingWakeAtMillis = Long.MAX_VALUE;
+			scheduleAt(untilMillis);
+		}
+	}
+
+	/**
+	 * Drops any hold, e.g. when the user explicitly asks for a retry.
+	 */
+	public synchronized void clearHold()
+	{
+		holdUntilMillis = 0;
+	}
+
+	public synchronized long getNextWakeMillis()
+	{
+		return pendingWake == null ? -1 : pendingWakeAtMillis;
+	}
+
+	public synchronized void cancel()
+	{
+		if (pendingWake != null)
+		{
+			pendingWake.cancel(false);
+			pendingWake = null;
+			pendingWakeAtMillis = Long.MAX_VALUE;
+		}
+	}
+
+	private void wake()
+	{
+		synchronized (this)
+		{
+			pendingWake = null;
+			pendingWakeAtMillis = Long.MAX_VALUE;
+		}
+		task.run();
+	}
+
+	/**
+	 * Backoff for the given attempt (1-based) with equal jitter, so trades that failed
+	 * together do not all come back in the same instant.
+	 */
+	public static long backoffSeconds(int attempt)
+	{
+		int exponent = Math.max(0, Math.min(attempt - 1, MAX_BACKOFF_EXPONENT));
+		long backoff = BASE_BACKOFF_SECONDS << exponent;
+		long half = backoff / 2;
+		return half + ThreadLocalRandom.current().nextLong(half + 1);
+	}
+
+	/**
+	 * Parses a Retry-After header, which is either delay-seconds or an HTTP-date.
+	 *
+	 * @return seconds to wait, or -1 if the header is missing or invalid
+	 */
+	public static long parseRetryAfterSeconds(String header, Instant now)
+	{
+		if (header == null || header.isBlank())
+		{
+			return -1;
+		}
+
+		String value = header.trim();
+		try
+		{
+			return Math.max(0, Long.parseLong(value));
+		}
+		catch (NumberFormatException e)
+		{
+			// Not delay-seconds, try HTTP-date
+		}
+
+		try
+		{
+			Instant retryAt = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+			return Math.max(0, retryAt.getEpochSecond() - now.getEpochSecond());
+		}
+		catch (DateTimeParseException e)
+		{
+			return -1;
+		}
+	}
+}
@@ -1,9 +1,11 @@
 package com.gemetrics.plugin;
 
+import com.google.gson.annotations.JsonAdapter;
 import lombok.Data;
 import java.util.List;
 
 @Data
+@JsonAdapter(TradeBatchRequestTypeAdapter.class)
 public class TradeBatchRequest
 {
 	private String runeliteClientId;
@@ -0,0 +1,181 @@
+package com.gemetrics.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Request body for runelite.trades.submit that streams the tRPC envelope
+ * ({@code {"input": {...}}}) straight into the connection through a JsonWriter.
+ *
+ * Nothing is materialised as an intermediate String, and the body can optionally be
+ * gzip-compressed on the fly (sent with {@code Content-Encoding: gzip}). The input is
+ * either the plain JSON batch or, when the server supports it, the
+ * {@link CompactTradeBatchCodec} encoding.
+ *
+ * A plain batch built from stored {@link TradePayload}s is not serialized at all: the
+ * payload bytes are copied between the envelope's opening and closing brackets, giving
+ * the same JSON the {@link TradeBatchRequest} adapter would write.
+ */
+public class TradeBatchRequestBody extends RequestBody
+{
+	private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+	private final Gson gson;
+	private final TradeBatchRequest request;
+	private final String runeliteClientId;
+	private final String osrsUsername;
+	private final List<byte[]> payloads;
+	private final boolean gzip;
+	private final boolean compact;
+	private long uncompressedBytes;
+
+	public TradeBatchRequestBody(Gson gson, TradeBatchRequest request, boolean gzip, boolean compact)
+	{
+		this.gson = gson;
+		this.request = request;
+		this.runeliteClientId = null;
+		this.osrsUsername = null;
+		this.payloads = null;
+		this.gzip = gzip;
+		this.compact = compact;
+	}
+
+	public TradeBatchRequestBody(Gson gson, String runeliteClientId, String osrsUsername, List<byte[]> payloads,
+		boolean gzip)
+	{
+		this.gson = gson;
+		this.request = null;
+		this.runeliteClientId = runeliteClientId;
+		this.osrsUsername = osrsUsername;
+		this.payloads = payloads;
+		this.gzip = gzip;
+		this.compact = false;
+	}
+
+	@Override
+	public MediaType contentType()
+	{
+		return JSON;
+	}
+
+	@Override
+	public long contentLength()
+	{
+		// Unknown up front; sent chunked
+		return -1;
+	}
+
+	public boolean isGzip()
+	{
+		return gzip;
+	}
+
+	public boolean isCompact()
+	{
+		return compact;
+	}
+
+	/**
+	 * Size of the JSON before compression, known once the body has been written.
+	 */
+	public long getUncompressedBytes()
+	{
+		return uncompressedBytes;
+	}
+
+	@Override
+	public void writeTo(BufferedSink sink) throws IOException
+	{
+		BufferedSink target = gzip ? Okio.buffer(new GzipSink(sink)) : sink;
+		CountingSink counter = new CountingSink(target);
+		BufferedSink json = Okio.buffer(counter);
+
+		if (payloads != null)
+		{
+			writePayloads(json);
+		}
+		else
+		{
+			Writer writer = new OutputStreamWriter(json.outputStream(), StandardCharsets.UTF_8);
+			JsonWriter jsonWriter = gson.newJsonWriter(writer);
+			jsonWriter.beginObject();
+			jsonWriter.name("input");
+			if (compact)
+			{
+				CompactTradeBatchCodec.encode(request, jsonWriter);
+			}
+			else
+			{
+				gson.getAdapter(TradeBatchRequest.class).write(jsonWriter, request);
+			}
+			jsonWriter.endObject();
+			jsonWriter.flush();
+		}
+		json.emit();
+
+		uncompressedBytes = counter.bytesWritten;
+
+		if (gzip)
+		{
+			// Writes the gzip trailer; OkHttp expects the sink to be closed by the body here
+			target.close();
+		}
+	}
+
+	/**
+	 * Field order and null handling follow {@link TradeBatchRequestTypeAdapter}.
+	 */
+	private void writePayloads(BufferedSink json) throws IOException
+	{
+		json.writeUtf8("{\"input\":{");
+		if (runeliteClientId != null)
+		{
+			json.writeUtf8("\"runeliteClientId\":").writeUtf8(gson.toJson(runeliteClientId)).writeByte(',');
+		}
+		if (osrsUsername != null)
+		{
+			json.writeUtf8("\"osrsUsername\":").writeUtf8(gson.toJson(osrsUsername)).writeByte(',');
+		}
+		json.writeUtf8("\"trades\":[");
+		for (int i = 0; i < payloads.size(); i++)
+		{
+			if (i > 0)
+			{
+				json.writeByte(',');
+			}
+			json.write(payloads.get(i));
+		}
+		json.writeUtf8("]}}");
+	}
+
+	private static class CountingSink extends ForwardingSink
+	{
+		private long bytesWritten;
+
+		CountingSink(Sink delegate)
+		{
+			super(delegate);
+		}
+
+		@Override
+		public void write(Buffer source, long byteCount) throws IOException
+		{
+			super.write(source, byteCount);
+			bytesWritten += byteCount;
+		}
+	}
+}
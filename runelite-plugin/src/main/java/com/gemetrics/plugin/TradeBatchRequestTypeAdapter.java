@@ -0,0 +1,90 @@
+package com.gemetrics.plugin;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hand-written Gson adapter for {@link TradeBatchRequest}. Trades are written one by one
+ * through {@link TradeEventTypeAdapter}, so a batch is streamed without reflection.
+ */
+public class TradeBatchRequestTypeAdapter extends TypeAdapter<TradeBatchRequest>
+{
+	private final TradeEventTypeAdapter tradeAdapter = new TradeEventTypeAdapter();
+
+	@Override
+	public void write(JsonWriter out, TradeBatchRequest request) throws IOException
+	{
+		if (request == null)
+		{
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+		out.name("runeliteClientId").value(request.getRuneliteClientId());
+		out.name("osrsUsername").value(request.getOsrsUsername());
+		if (request.getTrades() != null)
+		{
+			out.name("trades");
+			out.beginArray();
+			for (TradeEvent trade : request.getTrades())
+			{
+				tradeAdapter.write(out, trade);
+			}
+			out.endArray();
+		}
+		out.endObject();
+	}
+
+	@Override
+	public TradeBatchRequest read(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+
+		TradeBatchRequest request = new TradeBatchRequest();
+		in.beginObject();
+		while (in.hasNext())
+		{
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				continue;
+			}
+
+			switch (name)
+			{
+				case "runeliteClientId":
+					request.setRuneliteClientId(in.nextString());
+					break;
+				case "osrsUsername":
+					request.setOsrsUsername(in.nextString());
+					break;
+				case "trades":
+					List<TradeEvent> trades = new ArrayList<>();
+					in.beginArray();
+					while (in.hasNext())
+					{
+						trades.add(tradeAdapter.read(in));
+					}
+					in.endArray();
+					request.setTrades(trades);
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		return request;
+	}
+}
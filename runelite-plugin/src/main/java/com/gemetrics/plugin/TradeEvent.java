@@ -1,19 +1,88 @@
 package com.gemetrics.plugin;
 
-import lombok.Data;
+import com.google.gson.annotations.JsonAdapter;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.With;
 
-@Data
+/**
+ * One observed Grand Exchange offer state. Immutable, with primitive fields so a large
+ * offline queue costs one object per trade instead of one plus a handful of boxes and
+ * strings.
+ *
+ * The JSON form is unchanged from the old bean: offerType and status are the lowercase
+ * strings the tRPC API expects, and timestamp is an ISO-8601 instant (held here as epoch
+ * millis). Every Gson instance (de)serializes it through {@link TradeEventTypeAdapter}.
+ */
+@Value
+@Builder(toBuilder = true)
+@JsonAdapter(TradeEventTypeAdapter.class)
 public class TradeEvent
 {
-	private String runeliteEventId;
-	private Integer itemId;
-	private String itemName;
-	private String offerType; // "buy" or "sell"
-	private Integer price;
-	private Integer quantity;
-	private Integer filledQuantity;
-	private Integer remainingQuantity;
-	private String status; // "pending", "completed", "canceled"
-	private String timestamp;
-}
+	@Getter
+	@RequiredArgsConstructor
+	public enum OfferType
+	{
+		BUY("buy"),
+		SELL("sell");
+
+		private final String wireName;
+
+		/**
+		 * @return the offer type with this wire name, or null if it is not known
+		 */
+		public static OfferType fromWireName(String wireName)
+		{
+			for (OfferType offerType : values())
+			{
+				if (offerType.wireName.equals(wireName))
+				{
+					return offerType;
+				}
+			}
+			return null;
+		}
+	}
+
+	@Getter
+	@RequiredArgsConstructor
+	public enum Status
+	{
+		PENDING("pending"),
+		COMPLETED("completed"),
+		CANCELED("canceled");
 
+		private final String wireName;
+
+		/**
+		 * @return the status with this wire name, or null if it is not known
+		 */
+		public static Status fromWireName(String wireName)
+		{
+			for (Status status : values())
+			{
+				if (status.wireName.equals(wireName))
+				{
+					return status;
+				}
+			}
+			return null;
+		}
+	}
+
+	String runeliteEventId;
+	int itemId;
+	String itemName;
+	OfferType offerType;
+	int price;
+	int quantity;
+	int filledQuantity;
+	int remainingQuantity;
+	Status status;
+	long timestamp;
+	// OSRS account the trade was made on; local history only, never serialized
+	@With
+	transient String account;
+}
@@ -0,0 +1,41 @@
+package com.gemetrics.plugin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Derives runeliteEventIds from the content of an offer instead of generating random ones.
+ *
+ * The same offer state always maps to the same id, so a batch that is re-sent after a
+ * timeout or replayed after a restart is recognised as a duplicate on both sides.
+ * Nothing time-based goes into the key; the slot's offer generation tells apart repeats
+ * of an identical offer. Ids stay in UUID format (name-based, version 3) because the server expects one.
+ */
+public final class TradeEventIds
+{
+	private TradeEventIds()
+	{
+	}
+
+	public static String derive(
+		String runeliteClientId,
+		int slot,
+		int offerGeneration,
+		int itemId,
+		int price,
+		int totalQuantity,
+		int filledQuantity,
+		String state)
+	{
+		String key = runeliteClientId
+			+ '|' + slot
+			+ '|' + offerGeneration
+			+ '|' + itemId
+			+ '|' + price
+			+ '|' + totalQuantity
+			+ '|' + filledQuantity
+			+ '|' + state;
+
+		return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+	}
+}
@@ -0,0 +1,145 @@
+package com.gemetrics.plugin;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Hand-written Gson adapter for {@link TradeEvent}, replacing the reflective one.
+ *
+ * Writes the fields in declaration order with the same names, lowercase enum strings and
+ * ISO-8601 timestamp the reflective adapter produced, so the tRPC wire shape and the
+ * stored trade_data are unchanged. Null strings and enums, and a timestamp of 0, are left
+ * out like before.
+ *
+ * Reads anything older versions wrote: unknown fields are skipped, unknown enum strings
+ * become null, and the timestamp may be an ISO string of any precision, epoch millis or
+ * null (read as 0).
+ */
+public class TradeEventTypeAdapter extends TypeAdapter<TradeEvent>
+{
+	@Override
+	public void write(JsonWriter out, TradeEvent trade) throws IOException
+	{
+		if (trade == null)
+		{
+			out.nullValue();
+			return;
+		}
+
+		out.beginObject();
+		out.name("runeliteEventId").value(trade.getRuneliteEventId());
+		out.name("itemId").value(trade.getItemId());
+		out.name("itemName").value(trade.getItemName());
+		out.name("offerType").value(trade.getOfferType() != null ? trade.getOfferType().getWireName() : null);
+		out.name("price").value(trade.getPrice());
+		out.name("quantity").value(trade.getQuantity());
+		out.name("filledQuantity").value(trade.getFilledQuantity());
+		out.name("remainingQuantity").value(trade.getRemainingQuantity());
+		out.name("status").value(trade.getStatus() != null ? trade.getStatus().getWireName() : null);
+		// 0 means no timestamp, which the old String field left out rather than sending the epoch
+		out.name("timestamp").value(trade.getTimestamp() > 0 ? Instant.ofEpochMilli(trade.getTimestamp()).toString() : null);
+		out.endObject();
+	}
+
+	@Override
+	public TradeEvent read(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+
+		TradeEvent.TradeEventBuilder trade = TradeEvent.builder();
+		in.beginObject();
+		while (in.hasNext())
+		{
+			switch (in.nextName())
+			{
+				case "runeliteEventId":
+					trade.runeliteEventId(readString(in));
+					break;
+				case "itemId":
+					trade.itemId(readInt(in));
+					break;
+				case "itemName":
+					trade.itemName(readString(in));
+					break;
+				case "offerType":
+					trade.offerType(TradeEvent.OfferType.fromWireName(readString(in)));
+					break;
+				case "price":
+					trade.price(readInt(in));
+					break;
+				case "quantity":
+					trade.quantity(readInt(in));
+					break;
+				case "filledQuantity":
+					trade.filledQuantity(readInt(in));
+					break;
+				case "remainingQuantity":
+					trade.remainingQuantity(readInt(in));
+					break;
+				case "status":
+					trade.status(TradeEvent.Status.fromWireName(readString(in)));
+					break;
+				case "timestamp":
+					trade.timestamp(readTimestamp(in));
+					break;
+				default:
+					in.skipValue();
+			}
+		}
+		in.endObject();
+		return trade.build();
+	}
+
+	private static String readString(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	private static int readInt(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return 0;
+		}
+		return in.nextInt();
+	}
+
+	private static long readTimestamp(JsonReader in) throws IOException
+	{
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL)
+		{
+			in.nextNull();
+			return 0;
+		}
+		if (token == JsonToken.NUMBER)
+		{
+			return in.nextLong();
+		}
+
+		try
+		{
+			return Instant.parse(in.nextString()).toEpochMilli();
+		}
+		catch (DateTimeParseException e)
+		{
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package com.gemetrics.plugin;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only local trade history, partitioned into one table per UTC day
+ * ({@code trade_history_yyyyMMdd}) and listed in {@code trade_history_partitions}.
+ *
+ * Retention drops whole partitions, which is a cheap catalog change instead of a large
+ * DELETE. Each partition is indexed on (item_id, ts) and (account, ts), so item and
+ * account queries only visit matching rows, in time order. The rows themselves are still
+ * read, since results are decoded from trade_data.
+ *
+ * trade_data holds the {@link TradePayload} bytes the outbox stored, written as they are.
+ * Partitions created before it was a BLOB hold the same bytes as TEXT, which reads the same.
+ *
+ * Not thread-safe: writes must run on the writer connection under its lock, reads on a
+ * connection nobody else is using.
+ */
+@Slf4j
+class TradeHistoryStore
+{
+	private static final String TABLE_PREFIX = "trade_history_";
+	private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+	private static final String CREATE_CATALOG = """
+		CREATE TABLE IF NOT EXISTS trade_history_partitions (
+			day INTEGER PRIMARY KEY,
+			table_name TEXT NOT NULL,
+			created_at INTEGER NOT NULL
+		)
+	""";
+
+	private final Set<Integer> knownPartitions = new HashSet<>();
+
+	// Insert for the partition currently being appended to; it only changes at midnight UTC
+	private int insertDay = -1;
+	private PreparedStatement insert;
+
+	static void createCatalog(Connection connection) throws SQLException
+	{
+		try (Statement stmt = connection.createStatement())
+		{
+			stmt.execute(CREATE_CATALOG);
+		}
+	}
+
+	/**
+	 * Appends a trade to the partition for its timestamp, creating the partition on
+	 * first use. Replays of the same event are ignored. Runs in the caller's transaction.
+	 * The payload is the trade's {@link TradePayload} encoding, stored as is.
+	 */
+	void append(Connection connection, TradeEvent trade, byte[] payload) throws SQLException
+	{
+		// Events without a timestamp are filed under their arrival time
+		long ts = trade.getTimestamp() > 0 ? trade.getTimestamp() : System.currentTimeMillis();
+		int day = dayOf(ts);
+		ensurePartition(connection, day);
+
+		PreparedStatement stmt = insertFor(connection, day);
+		stmt.setString(1, trade.getRuneliteEventId());
+		stmt.setLong(2, ts);
+		stmt.setString(3, trade.getAccount());
+		stmt.setInt(4, trade.getItemId());
+		stmt.setString(5, trade.getOfferType() != null ? trade.getOfferType().getWireName() : null);
+		stmt.setString(6, trade.getStatus() != null ? trade.getStatus().getWireName() : null);
+		stmt.setInt(7, trade.getPrice());
+		stmt.setInt(8, trade.getQuantity());
+		stmt.setInt(9, trade.getFilledQuantity());
+		stmt.setBytes(10, payload);
+		stmt.executeUpdate();
+	}
+
+	/**
+	 * Trades between fromMillis (inclusive) and toMillis (exclusive), oldest first,
+	 * optionally filtered by item and/or account. Only partitions overlapping the range
+	 * are read.
+	 */
+	List<TradeEvent> query(Connection connection, Integer itemId, String account, long fromMillis, long toMillis)
+		throws SQLException
+	{
+		List<TradeEvent> trades = new ArrayList<>();
+		for (int day : partitionsBetween(connection, dayOf(fromMillis), dayOf(toMillis)))
+		{
+			StringBuilder sql = new StringBuilder("SELECT trade_data, account FROM ")
+				.append(tableName(day))
+				.append(" WHERE ts >= ? AND ts < ?");
+			if (itemId != null)
+			{
+				sql.append(" AND item_id = ?");
+			}
+			if (account != null)
+			{
+				sql.append(" AND account = ?");
+			}
+			sql.append(" ORDER BY ts ASC");
+
+			try (PreparedStatement stmt = connection.prepareStatement(sql.toString()))
+			{
+				int index = 1;
+				stmt.setLong(index++, fromMillis);
+				stmt.setLong(index++, toMillis);
+				if (itemId != null)
+				{
+					stmt.setInt(index++, itemId);
+				}
+				if (account != null)
+				{
+					stmt.setString(index, account);
+				}
+
+				try (ResultSet rs = stmt.executeQuery())
+				{
+					while (rs.next())
+					{
+						TradeEvent trade = TradePayload.decode(rs.getBytes("trade_data"));
+						trades.add(trade.withAccount(rs.getString("account")));
+					}
+				}
+			}
+		}
+		return trades;
+	}
+
+	/**
+	 * Drops every partition for a day before cutoff. Runs in the caller's transaction.
+	 *
+	 * @return number of partitions dropped
+	 */
+	int dropPartitionsBefore(Connection connection, LocalDate cutoff) throws SQLException
+	{
+		int cutoffDay = Integer.parseInt(cutoff.format(DAY_FORMAT));
+		List<Integer> expired = partitionsBetween(connection, 0, cutoffDay - 1);
+
+		try (Statement stmt = connection.createStatement();
+			 PreparedStatement uncatalog = connection.prepareStatement(
+				 "DELETE FROM trade_history_partitions WHERE day = ?"))
+		{
+			for (int day : expired)
+			{
+				if (day == insertDay)
+				{
+					closeInsert();
+				}
+				stmt.execute("DROP TABLE IF EXISTS " + tableName(day));
+				uncatalog.setInt(1, day);
+				uncatalog.executeUpdate();
+				knownPartitions.remove(day);
+			}
+		}
+		return expired.size();
+	}
+
+	List<Integer> partitionsBetween(Connection connection, int fromDay, int toDay) throws SQLException
+	{
+		List<Integer> days = new ArrayList<>();
+		try (PreparedStatement stmt = connection.prepareStatement(
+			"SELECT day FROM trade_history_partitions WHERE day BETWEEN ? AND ? ORDER BY day"))
+		{
+			stmt.setInt(1, fromDay);
+			stmt.setInt(2, toDay);
+			try (ResultSet rs = stmt.executeQuery())
+			{
+				while (rs.next())
+				{
+					days.add(rs.getInt(1));
+				}
+			}
+		}
+		return days;
+	}
+
+	void close()
+	{
+		closeInsert();
+	}
+
+	/**
+	 * Forgets cached partition state, e.g. after the transaction that created a
+	 * partition was rolled back.
+	 */
+	void reset()
+	{
+		knownPartitions.clear();
+		closeInsert();
+	}
+
+	private void ensurePartition(Connection connection, int day) throws SQLException
+	{
+		if (knownPartitions.contains(day))
+		{
+			return;
+		}
+
+		String table = tableName(day);
+		try (Statement stmt = connection.createStatement())
+		{
+			stmt.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+				+ "event_id TEXT NOT NULL UNIQUE, "
+				+ "ts INTEGER NOT NULL, "
+				+ "account TEXT, "
+				+ "item_id INTEGER, "
+				+ "offer_type TEXT, "
+				+ "status TEXT, "
+				+ "price INTEGER, "
+				+ "quantity INTEGER, "
+				+ "filled_quantity INTEGER, "
+				+ "trade_data BLOB NOT NULL)");
+			createIndexes(stmt, table);
+		}
+
+		try (PreparedStatement stmt = connection.prepareStatement(
+			"INSERT OR IGNORE INTO trade_history_partitions (day, table_name, created_at) VALUES (?, ?, ?)"))
+		{
+			stmt.setInt(1, day);
+			stmt.setString(2, table);
+			stmt.setLong(3, Instant.now().getEpochSecond());
+			stmt.executeUpdate();
+		}
+
+		knownPartitions.add(day);
+		log.debug("Created trade history partition {}", table);
+	}
+
+	private static void createIndexes(Statement stmt, String table) throws SQLException
+	{
+		// Just enough to find rows in time order; queries read trade_data anyway, so wider
+		// indexes would only slow down every insert
+		stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_item ON " + table + " (item_id, ts)");
+		stmt.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_account ON " + table + " (account, ts)");
+	}
+
+	/**
+	 * Replaces the indexes of every existing partition with the current definitions.
+	 * Runs in the caller's transaction.
+	 */
+	static void rebuildIndexes(Connection connection) throws SQLException
+	{
+		List<String> tables = new ArrayList<>();
+		try (Statement stmt = connection.createStatement())
+		{
+			try (ResultSet rs = stmt.executeQuery("SELECT table_name FROM trade_history_partitions"))
+			{
+				while (rs.next())
+				{
+					tables.add(rs.getString(1));
+				}
+			}
+
+			for (String table : tables)
+			{
+				stmt.execute("DROP INDEX IF EXISTS idx_" + table + "_item");
+				stmt.execute("DROP INDEX IF EXISTS idx_" + table + "_account");
+				createIndexes(stmt, table);
+			}
+		}
+	}
+
+	private PreparedStatement insertFor(Connection connection, int day) throws SQLException
+	{
+		if (day != insertDay || insert == null)
+		{
+			closeInsert();
+			insert = connection.prepareStatement("INSERT OR IGNORE INTO " + tableName(day)
+				+ " (event_id, ts, account, item_id, offer_type, status, price, quantity, filled_quantity, trade_data)"
+				+ " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+			insertDay = day;
+		}
+		return insert;
+	}
+
+	private void closeInsert()
+	{
+		if (insert != null)
+		{
+			try
+			{
+				insert.close();
+			}
+			catch (SQLException e)
+			{
+				log.error("Error closing history insert", e);
+			}
+			insert = null;
+			insertDay = -1;
+		}
+	}
+
+	private static String tableName(int day)
+	{
+		// day is a yyyyMMdd integer, never user input
+		return TABLE_PREFIX + day;
+	}
+
+	static int dayOf(long epochMillis)
+	{
+		LocalDate date = Instant.ofEpochMilli(epochMillis).atZone(ZoneOffset.UTC).toLocalDate();
+		return Integer.parseInt(date.format(DAY_FORMAT));
+	}
+}
@@ -0,0 +1,115 @@
+package com.gemetrics.plugin;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, lock-free ring buffer between the client thread (the only producer) and the
+ * database writer thread (the only consumer).
+ *
+ * Handing a trade over costs one array store and one ordered write, so the client thread
+ * never waits on SQLite. Neither side may be called from more than one thread.
+ */
+public class TradeIngestBuffer
+{
+	private final TradeEvent[] slots;
+	private final int mask;
+
+	// Next position to read; only advanced by the consumer
+	private final AtomicLong head = new AtomicLong();
+	// Next position to write; only advanced by the producer
+	private final AtomicLong tail = new AtomicLong();
+
+	public TradeIngestBuffer(int capacity)
+	{
+		if (capacity < 1 || capacity > (1 << 30))
+		{
+			throw new IllegalArgumentException("Invalid ingest buffer capacity: " + capacity);
+		}
+
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+		{
+			size <<= 1;
+		}
+
+		this.slots = new TradeEvent[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Producer side. Returns false without blocking if the buffer is full.
+	 */
+	public boolean offer(TradeEvent trade)
+	{
+		if (trade == null)
+		{
+			throw new NullPointerException("trade");
+		}
+
+		long currentTail = tail.get();
+		if (currentTail - head.get() >= slots.length)
+		{
+			return false;
+		}
+
+		slots[(int) (currentTail & mask)] = trade;
+		// Publishes the slot write to the consumer
+		tail.lazySet(currentTail + 1);
+		return true;
+	}
+
+	/**
+	 * Consumer side. Returns null if the buffer is empty.
+	 */
+	public TradeEvent poll()
+	{
+		long currentHead = head.get();
+		if (currentHead >= tail.get())
+		{
+			return null;
+		}
+
+		int index = (int) (currentHead & mask);
+		TradeEvent trade = slots[index];
+		slots[index] = null;
+		head.lazySet(currentHead + 1);
+		return trade;
+	}
+
+	/**
+	 * Consumer side. Moves up to maxElements trades into the collection.
+	 *
+	 * @return the number of trades drained
+	 */
+	public int drainTo(Collection<TradeEvent> target, int maxElements)
+	{
+		long currentHead = head.get();
+		long available = Math.min(tail.get() - currentHead, maxElements);
+
+		for (long i = 0; i < available; i++)
+		{
+			int index = (int) ((currentHead + i) & mask);
+			target.add(slots[index]);
+			slots[index] = null;
+		}
+
+		head.lazySet(currentHead + available);
+		return (int) available;
+	}
+
+	public int size()
+	{
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	public int capacity()
+	{
+		return slots.length;
+	}
+}
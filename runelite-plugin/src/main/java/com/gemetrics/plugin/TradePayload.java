@@ -0,0 +1,27 @@
+package com.gemetrics.plugin;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Canonical UTF-8 JSON encoding of a {@link TradeEvent}.
+ *
+ * A trade is encoded exactly once, when it is saved. The outbox keeps these bytes as they
+ * are and uploads splice them into the batch envelope, so a queued trade is not parsed or
+ * serialized again however often it is retried.
+ */
+public final class TradePayload
+{
+	private TradePayload()
+	{
+	}
+
+	public static byte[] encode(TradeEvent trade)
+	{
+		return GeMetricsGson.INSTANCE.toJson(trade, TradeEvent.class).getBytes(StandardCharsets.UTF_8);
+	}
+
+	public static TradeEvent decode(byte[] payload)
+	{
+		return GeMetricsGson.INSTANCE.fromJson(new String(payload, StandardCharsets.UTF_8), TradeEvent.class);
+	}
+}
@@ -0,0 +1,103 @@
+package com.gemetrics.plugin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Durable outbox of trades waiting to be uploaded.
+ *
+ * A trade is saved once, leased by the sync loop, and then either acknowledged (it leaves
+ * the outbox), released, or rescheduled with new retry info. Implementations must be safe
+ * to call from the client thread, the ingest writer and the sync executor at once.
+ *
+ * Settings and the local trade history are not part of the outbox. They stay in
+ * {@link LocalTradeStorage}, which records history as part of its own saves. With any other
+ * backend selected, local trade history is disabled: new trades are not recorded in it.
+ */
+public interface TradeStore
+{
+	/**
+	 * Persists a trade. Replays of an event that is already in the outbox are ignored.
+	 *
+	 * @throws IllegalStateException if the store has been shut down
+	 */
+	void savePendingTrade(TradeEvent trade);
+
+	/**
+	 * Persists a trade. The future completes once the trade is durable, or fails with
+	 * IllegalStateException if the store has been shut down.
+	 */
+	CompletableFuture<Void> savePendingTradeAsync(TradeEvent trade);
+
+	/**
+	 * Every trade that is due, leased or not, oldest first.
+	 */
+	List<TradeEvent> loadPendingTrades();
+
+	/**
+	 * Atomically claims up to limit due trades. Claimed trades are not handed out again
+	 * until they are acknowledged, released, rescheduled, or the lease expires.
+	 */
+	List<PendingTrade> leasePendingTrades(int limit, long leaseSeconds);
+
+	void ackPendingTrade(String runeliteEventId);
+
+	void ackPendingTrades(Collection<String> runeliteEventIds);
+
+	/**
+	 * Returns a leased trade to the pending state without touching its retry schedule.
+	 */
+	void releasePendingTrade(String runeliteEventId);
+
+	CompletableFuture<Void> releasePendingTradeAsync(String runeliteEventId);
+
+	void removePendingTrade(String runeliteEventId);
+
+	void removePendingTrades(Collection<String> runeliteEventIds);
+
+	/**
+	 * Reschedules trades after a failed upload; also releases their leases. Updates for trades
+	 * that are no longer leased, or leased under a different lease, are ignored.
+	 */
+	void updateRetryInfo(Collection<RetryUpdate> updates);
+
+	/**
+	 * Drops trades that were queued more than maxAgeDays ago and were never uploaded.
+	 */
+	void cleanupOldTrades(int maxAgeDays);
+
+	/**
+	 * Number of trades still in the outbox, leased or not.
+	 */
+	int getPendingTradeCount();
+
+	/**
+	 * Earliest time (epoch seconds) at which a trade becomes eligible for leasing.
+	 *
+	 * @return the earliest due time, or null if the outbox is empty
+	 */
+	Long getNextDueAt();
+
+	/**
+	 * Lets the store batch async writes that arrive within windowMillis of each other.
+	 * Stores whose writes are already cheap can ignore it.
+	 */
+	default void enableGroupCommit(long windowMillis, int maxBatchSize)
+	{
+	}
+
+	/**
+	 * Reopens the store after {@link #shutdown()}, e.g. when the plugin is enabled again.
+	 * Does nothing while the store is open.
+	 */
+	default void open()
+	{
+	}
+
+	/**
+	 * Commits every write accepted so far, including queued async ones, then closes the
+	 * store until {@link #open()}.
+	 */
+	void shutdown();
+}
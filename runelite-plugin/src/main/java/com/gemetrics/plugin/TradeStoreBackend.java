@@ -0,0 +1,24 @@
+package com.gemetrics.plugin;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Which {@link TradeStore} holds the upload outbox. Only SQLITE also records local trade
+ * history; with JOURNAL, history is disabled.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TradeStoreBackend
+{
+	SQLITE("SQLite database"),
+	JOURNAL("Append-only journal (no local history)");
+
+	private final String name;
+
+	@Override
+	public String toString()
+	{
+		return name;
+	}
+}
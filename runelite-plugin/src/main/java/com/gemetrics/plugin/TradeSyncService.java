@@ -4,21 +4,29 @@ import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.GrandExchangeOffer;
 import net.runelite.api.GrandExchangeOfferState;
 import net.runelite.api.GrandExchangeOfferType;
-import net.runelite.api.ItemManager;
 import net.runelite.client.config.ConfigManager;
 import okhttp3.*;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Slf4j
 @Singleton
@@ -31,104 +39,226 @@ public class TradeSyncService
 	private AuthenticationService authService;
 
 	@Inject
-	private ItemManager itemManager;
+	private ItemMetadataCache itemMetadataCache;
 
 	@Inject
 	private ConfigManager configManager;
 	
+	// Settings and trade history
 	@Inject
 	private LocalTradeStorage localStorage;
 	
+	// Upload outbox; the same object as localStorage unless another backend is configured
+	@Inject
+	private TradeStore tradeStore;
+	
 	@Inject
 	private NotificationService notificationService;
+	
+	// Shared with AuthenticationService; one pool, so uploads reuse warm connections
+	@Inject
+	private GeMetricsHttpClient httpClient;
 
-	private final OkHttpClient httpClient;
 	private final Gson gson;
-	private final Queue<TradeEvent> pendingTrades;
-	private final ScheduledExecutorService executorService;
+	// Created by initialize() and shut down by shutdown(), so the plugin can be restarted
+	private volatile ScheduledExecutorService executorService;
+	private volatile SyncScheduler syncScheduler;
+	private volatile ScheduledFuture<?> maintenanceTask;
+	// Set by shutdown() and cleared by initialize(); the plugin stop and the client exit both shut down
+	private final AtomicBoolean stopped = new AtomicBoolean();
+	// The drainBacklog round currently uploading, if any
+	private volatile Drain activeDrain;
 	private String runeliteClientId;
 	private String accessToken;
 	private String osrsUsername;
-	private int consecutiveFailures;
+	private final AtomicInteger consecutiveFailures;
+	// Failed token refreshes in a row; sync backs off on these like on failed uploads
+	private final AtomicInteger authRetryAttempts = new AtomicInteger();
+	private final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(
+		MIN_SYNC_BATCH_SIZE, INITIAL_SYNC_BATCH_SIZE, MAX_SYNC_BATCH_SIZE,
+		MIN_SYNC_PAYLOAD_BYTES, MAX_SYNC_PAYLOAD_BYTES, TARGET_SYNC_LATENCY_MILLIS);
+	// Running average of encoded bytes per trade, used to respect the payload budget
+	private volatile int averageTradeBytes;
+	// Set once the server advertises the compact batch encoding
+	private volatile boolean compactEncodingSupported;
 	private static final int MAX_RETRY_ATTEMPTS = 5;
+	private static final long DEFAULT_RATE_LIMIT_SECONDS = 60;
+	// runelite.trades.submit rejects batches larger than this, unless the server advertises
+	// a higher limit through MAX_BATCH_SIZE_HEADER
+	private static final int MAX_SYNC_BATCH_SIZE = 100;
+	// Cap on an advertised limit; the payload byte budget keeps real batches well below it
+	private static final int MAX_ADVERTISED_BATCH_SIZE = 1000;
+	static final String MAX_BATCH_SIZE_HEADER = "X-GeMetrics-Max-Batch-Size";
+	private static final int MIN_SYNC_BATCH_SIZE = 10;
+	private static final int INITIAL_SYNC_BATCH_SIZE = 50;
+	private static final int MIN_SYNC_PAYLOAD_BYTES = 16 * 1024;
+	private static final int MAX_SYNC_PAYLOAD_BYTES = 256 * 1024;
+	private static final long TARGET_SYNC_LATENCY_MILLIS = 1000;
+	private static final int MAX_IN_FLIGHT_REQUESTS_LIMIT = GeMetricsHttpClient.MAX_REQUESTS_PER_HOST;
+	// Long enough to outlive any upload; an expired lease makes the trade eligible again
+	private static final long LEASE_SECONDS = 120;
+	private static final long FLUSH_TIMEOUT_SECONDS = 5;
+	private static final int ACKNOWLEDGED_ID_CACHE_SIZE = 1000;
+	private static final int INGEST_BUFFER_CAPACITY = 1024;
+	private static final int WRITER_DRAIN_LIMIT = 256;
+	private static final long WRITER_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long GROUP_COMMIT_WINDOW_MILLIS = 50;
+	private static final int GROUP_COMMIT_MAX_WRITES = 500;
+	// Trades that could not be uploaded within this many days are given up on
+	private static final int OUTBOX_MAX_AGE_DAYS = 7;
+	private static final long MAINTENANCE_INITIAL_DELAY_MINUTES = 5;
+	// initialize() runs on the plugin startup path; it should never come close to this
+	private static final long STARTUP_BUDGET_MILLIS = 50;
+	
+	// Trades waiting to be persisted by the writer thread. If it is ever full, or the writer
+	// is not running, the trade is saved synchronously on the calling thread instead.
+	private final TradeIngestBuffer ingestBuffer = new TradeIngestBuffer(INGEST_BUFFER_CAPACITY);
+	private final AtomicLong ingestOverflowCount = new AtomicLong();
+	private final AtomicLong maxHandlerLatencyNanos = new AtomicLong();
+	private volatile Thread writerThread;
+	private volatile boolean writerRunning;
+	private volatile boolean writerIdle;
+	
+	// Event ids the server has already accepted; replays of these are dropped before any work
+	private final Set<String> acknowledgedEventIds = Collections.synchronizedSet(
+		Collections.newSetFromMap(new LinkedHashMap<String, Boolean>()
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest)
+			{
+				return size() > ACKNOWLEDGED_ID_CACHE_SIZE;
+			}
+		}));
 
 	public TradeSyncService()
 	{
-		this.httpClient = new OkHttpClient();
-		this.gson = new GsonBuilder().create();
-		this.pendingTrades = new ConcurrentLinkedQueue<>();
-		this.executorService = Executors.newSingleThreadScheduledExecutor(r -> {
-			Thread thread = new Thread(r, "GeMetrics-Sync");
-			thread.setDaemon(true);
-			return thread;
-		});
-		this.consecutiveFailures = 0;
+		this.gson = GeMetricsGson.INSTANCE;
+		// Only drives notifications; retry timing is tracked per trade in the outbox
+		this.consecutiveFailures = new AtomicInteger();
 	}
 
 	public void initialize()
 	{
+		ScheduledExecutorService running = executorService;
+		if (running != null && !running.isShutdown())
+		{
+			// Already started; a second start would queue another cache load and maintenance task
+			log.debug("Trade sync already running");
+			return;
+		}
+		
+		long startNanos = System.nanoTime();
+		
+		stopped.set(false);
+		startExecutor();
+		
 		// Load or generate client ID
 		runeliteClientId = loadOrGenerateClientId();
 		
 		// Load access token if available
 		accessToken = authService.getAccessToken();
 		
-		// Load persisted trades from database
-		loadPersistedTrades();
+		// Sync pauses while there is no token; a login or refresh picks the backlog up again
+		authService.setAuthenticatedListener(this::onAuthenticated);
+		
+		// Open the API connection in the background so the first sync skips the handshake
+		httpClient.preconnect(config.apiUrl());
+		
+		// Reopen the stores if the plugin was stopped before; a no-op on first start
+		localStorage.open();
+		if (tradeStore != localStorage)
+		{
+			tradeStore.open();
+		}
+		
+		// Start the database writer before any trades can arrive. Writes from the writer
+		// and the sync loop share transactions instead of syncing the disk once per trade.
+		tradeStore.enableGroupCommit(GROUP_COMMIT_WINDOW_MILLIS, GROUP_COMMIT_MAX_WRITES);
+		startIngestWriter();
 		
 		// Detect OSRS username from client (will be set by plugin)
 		// osrsUsername will be set when plugin detects it
 		
-		// Clean up old trades (older than 7 days)
-		localStorage.cleanupOldTrades(7);
+		// Nothing below touches the outbox on this thread; recovery runs first thing on the
+		// sync executor, so startup does not slow down with the backlog
+		executorService.execute(this::recoverOutbox);
+		executorService.execute(itemMetadataCache::load);
+		
+		// Cleanup and vacuum run in the background once the client has settled, then daily
+		maintenanceTask = executorService.scheduleWithFixedDelay(
+			this::runMaintenance,
+			MAINTENANCE_INITIAL_DELAY_MINUTES,
+			TimeUnit.DAYS.toMinutes(1),
+			TimeUnit.MINUTES
+		);
 		
-		// Start periodic sync
+		// Sync whatever is already due; after that the scheduler only wakes when the
+		// earliest trade in the outbox becomes due
 		if (config.autoSync())
 		{
-			executorService.scheduleAtFixedRate(
-				this::syncPendingTrades,
-				0,
-				config.syncInterval(),
-				TimeUnit.SECONDS
-			);
+			syncScheduler.scheduleNow();
 		}
+		
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		if (elapsedMillis > STARTUP_BUDGET_MILLIS)
+		{
+			log.warn("Trade sync startup took {}ms (budget {}ms)", elapsedMillis, STARTUP_BUDGET_MILLIS);
+		}
+		else
+		{
+			log.debug("Trade sync started in {}ms", elapsedMillis);
+		}
+	}
+
+	private void startExecutor()
+	{
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread thread = new Thread(r, "GeMetrics-Sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+		// A wake armed for later must not hold up shutdown
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		executorService = executor;
+		syncScheduler = new SyncScheduler(executor, this::syncPendingTrades);
+		// Uploads from before a restart finish on their own and must not block new rounds
+		activeDrain = null;
 	}
 
-	public void handleTradeEvent(GrandExchangeOffer offer)
+	public void handleTradeEvent(int slot, GrandExchangeOffer offer, int offerGeneration)
 	{
 		if (!config.enabled())
 		{
 			return;
 		}
 
+		long startNanos = System.nanoTime();
 		try
 		{
-			TradeEvent tradeEvent = convertOfferToTradeEvent(offer);
+			TradeEvent tradeEvent = convertOfferToTradeEvent(slot, offer, offerGeneration);
+			if (tradeEvent != null && acknowledgedEventIds.contains(tradeEvent.getRuneliteEventId()))
+			{
+				log.debug("Skipping already acknowledged trade: {}", tradeEvent.getRuneliteEventId());
+				return;
+			}
+			
 			if (tradeEvent != null)
 			{
-				// Add to in-memory queue
-				pendingTrades.offer(tradeEvent);
-				
-				// Persist to database
-				localStorage.savePendingTrade(tradeEvent);
+				// Hand off to the writer thread; disk I/O must not stall the game frame.
+				// The outbox is the single source of truth, so there is no in-memory copy.
+				enqueueForPersistence(tradeEvent);
 				
 				// Show notification
 				if (notificationService != null)
 				{
-					notificationService.showTradeDetected(tradeEvent.getItemName(), tradeEvent.getOfferType());
+					notificationService.showTradeDetected(tradeEvent.getItemName(), tradeEvent.getOfferType().getWireName());
 				}
 				
 				log.info("Trade tracked: {} {} {} @ {}gp", 
-					tradeEvent.getOfferType(), 
+					tradeEvent.getOfferType().getWireName(), 
 					tradeEvent.getQuantity(),
 					tradeEvent.getItemName(),
 					tradeEvent.getPrice());
-				
-				// If auto-sync is enabled, sync immediately for completed trades
-				if (config.autoSync() && tradeEvent.getStatus().equals("completed"))
-				{
-					executorService.execute(this::syncPendingTrades);
-				}
 			}
 		}
 		catch (Exception e)
@@ -140,9 +270,208 @@ public class TradeSyncService
 					"Failed to track trade: " + e.getMessage());
 			}
 		}
+		finally
+		{
+			recordHandlerLatency(System.nanoTime() - startNanos);
+		}
+	}
+	
+	private void enqueueForPersistence(TradeEvent tradeEvent)
+	{
+		Thread writer = writerThread;
+		if (writer == null || !ingestBuffer.offer(tradeEvent))
+		{
+			// Overflow policy: bypass the buffer rather than losing the trade. The group
+			// commit queue is just as backed up (or already shut down), so save directly.
+			long overflows = ingestOverflowCount.incrementAndGet();
+			log.warn("Ingest buffer unavailable or full ({} overflows), persisting from caller thread", overflows);
+			saveDirectly(tradeEvent);
+			scheduleSync(isCompleted(tradeEvent));
+			return;
+		}
+		
+		if (writerIdle)
+		{
+			LockSupport.unpark(writer);
+		}
+	}
+	
+	/**
+	 * Queues a trade for group commit. If its group is rolled back or the writer has shut
+	 * down, the trade has already left the ingest buffer, so it is saved directly instead.
+	 */
+	private CompletableFuture<Void> saveDurably(TradeEvent trade)
+	{
+		return tradeStore.savePendingTradeAsync(trade).handle((ignored, failure) -> {
+			if (failure != null)
+			{
+				log.warn("Group commit failed for trade {}, saving it directly", trade.getRuneliteEventId(), failure);
+				saveDirectly(trade);
+			}
+			return null;
+		});
+	}
+	
+	private void saveDirectly(TradeEvent trade)
+	{
+		try
+		{
+			tradeStore.savePendingTrade(trade);
+		}
+		catch (RuntimeException e)
+		{
+			log.error("Failed to persist trade {}; it will not be uploaded", trade.getRuneliteEventId(), e);
+		}
+	}
+	
+	/**
+	 * Runs a small piece of local I/O on the sync executor, off the client thread. Runs it
+	 * on the calling thread instead if sync is not running, e.g. while shutting down.
+	 */
+	public void runInBackground(Runnable task)
+	{
+		ScheduledExecutorService executor = executorService;
+		if (executor != null)
+		{
+			try
+			{
+				executor.execute(task);
+				return;
+			}
+			catch (RejectedExecutionException e)
+			{
+				// Shutting down; fall through
+			}
+		}
+		task.run();
+	}
+	
+	private boolean isCompleted(TradeEvent trade)
+	{
+		return trade.getStatus() == TradeEvent.Status.COMPLETED;
+	}
+	
+	/**
+	 * Arms the scheduler once a save is committed.
+	 */
+	private void syncWhenDurable(CompletableFuture<?> saved, boolean immediately)
+	{
+		saved.thenRun(() -> scheduleSync(immediately));
+	}
+	
+	/**
+	 * Arms the scheduler immediately for completed trades, otherwise within syncInterval
+	 * so partial fills are still batched together.
+	 */
+	private void scheduleSync(boolean immediately)
+	{
+		SyncScheduler scheduler = syncScheduler;
+		if (scheduler == null || !config.autoSync())
+		{
+			return;
+		}
+		
+		long delayMillis = immediately ? 0 : TimeUnit.SECONDS.toMillis(config.syncInterval());
+		scheduler.scheduleAt(System.currentTimeMillis() + delayMillis);
+	}
+	
+	private void recordHandlerLatency(long elapsedNanos)
+	{
+		long currentMax = maxHandlerLatencyNanos.get();
+		while (elapsedNanos > currentMax && !maxHandlerLatencyNanos.compareAndSet(currentMax, elapsedNanos))
+		{
+			currentMax = maxHandlerLatencyNanos.get();
+		}
+	}
+	
+	private void startIngestWriter()
+	{
+		if (writerThread != null)
+		{
+			return;
+		}
+		
+		writerRunning = true;
+		Thread thread = new Thread(this::runIngestWriter, "GeMetrics-Writer");
+		thread.setDaemon(true);
+		writerThread = thread;
+		thread.start();
+	}
+	
+	private void runIngestWriter()
+	{
+		List<TradeEvent> batch = new ArrayList<>(WRITER_DRAIN_LIMIT);
+		while (writerRunning || !ingestBuffer.isEmpty())
+		{
+			batch.clear();
+			if (ingestBuffer.drainTo(batch, WRITER_DRAIN_LIMIT) == 0)
+			{
+				writerIdle = true;
+				// Re-check after announcing we are idle so a concurrent offer is not missed;
+				// the bounded park covers the remaining race
+				if (ingestBuffer.isEmpty() && writerRunning)
+				{
+					LockSupport.parkNanos(this, WRITER_IDLE_PARK_NANOS);
+				}
+				writerIdle = false;
+				continue;
+			}
+			
+			// Queued for group commit; the writer does not wait for the disk sync
+			CompletableFuture<?>[] saves = new CompletableFuture<?>[batch.size()];
+			boolean anyCompleted = false;
+			for (int i = 0; i < saves.length; i++)
+			{
+				TradeEvent trade = batch.get(i);
+				saves[i] = saveDurably(trade);
+				anyCompleted |= isCompleted(trade);
+			}
+			
+			// A batch can be split across groups, so wait for every save rather than the
+			// last one. Completed trades are synced as soon as they are in the outbox.
+			syncWhenDurable(CompletableFuture.allOf(saves), anyCompleted);
+		}
+	}
+	
+	private void stopIngestWriter()
+	{
+		Thread writer = writerThread;
+		if (writer == null)
+		{
+			return;
+		}
+		
+		// The writer drains whatever is left in the buffer before exiting
+		writerRunning = false;
+		LockSupport.unpark(writer);
+		try
+		{
+			writer.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		writerThread = null;
+		
+		log.info("Trade ingest stats: max handler latency {}us, {} overflows",
+			TimeUnit.NANOSECONDS.toMicros(maxHandlerLatencyNanos.get()), ingestOverflowCount.get());
+	}
+	
+	/**
+	 * Worst observed time spent in handleTradeEvent on the client thread.
+	 */
+	public long getMaxHandlerLatencyNanos()
+	{
+		return maxHandlerLatencyNanos.get();
+	}
+	
+	public long getIngestOverflowCount()
+	{
+		return ingestOverflowCount.get();
 	}
 
-	private TradeEvent convertOfferToTradeEvent(GrandExchangeOffer offer)
+	private TradeEvent convertOfferToTradeEvent(int slot, GrandExchangeOffer offer, int offerGeneration)
 	{
 		if (offer == null)
 		{
@@ -151,214 +480,549 @@ public class TradeSyncService
 
 		GrandExchangeOfferState state = offer.getState();
 		
-		// Generate unique event ID
-		String runeliteEventId = UUID.randomUUID().toString();
-		
 		// Determine status
-		String status = "pending";
+		TradeEvent.Status status = TradeEvent.Status.PENDING;
 		if (state == GrandExchangeOfferState.BOUGHT || state == GrandExchangeOfferState.SOLD)
 		{
-			status = "completed";
+			status = TradeEvent.Status.COMPLETED;
 		}
 		else if (state == GrandExchangeOfferState.CANCELLED_BUY || state == GrandExchangeOfferState.CANCELLED_SELL)
 		{
-			status = "canceled";
+			status = TradeEvent.Status.CANCELED;
 		}
 
 		// Determine offer type
-		String offerType = offer.getType() == GrandExchangeOfferType.BUY ? "buy" : "sell";
+		TradeEvent.OfferType offerType = offer.getType() == GrandExchangeOfferType.BUY
+			? TradeEvent.OfferType.BUY
+			: TradeEvent.OfferType.SELL;
 
 		int itemId = offer.getItemId();
-		String itemName = getItemName(itemId);
+		String itemName = itemMetadataCache.get(itemId).getName();
 		int price = offer.getPrice();
 		int totalQuantity = offer.getTotalQuantity();
-		int spent = offer.getSpent();
-		int quantity = offer.getQuantity();
 		
-		// Calculate filled and remaining quantities
-		int filledQuantity = quantity;
-		int remainingQuantity = totalQuantity - quantity;
+		// Same notion of "filled" as OfferStateTracker, which decided this state is new
+		int filledQuantity = offer.getQuantitySold();
+		int remainingQuantity = totalQuantity - filledQuantity;
+		
+		// Content-derived event ID so re-sends of the same offer state are idempotent.
+		// The generation comes from OfferStateTracker and separates identical repeat offers.
+		String runeliteEventId = TradeEventIds.derive(runeliteClientId, slot, offerGeneration,
+			itemId, price, totalQuantity, filledQuantity, state.name());
 
-		TradeEvent tradeEvent = new TradeEvent();
-		tradeEvent.setRuneliteEventId(runeliteEventId);
-		tradeEvent.setItemId(itemId);
-		tradeEvent.setItemName(itemName);
-		tradeEvent.setOfferType(offerType);
-		tradeEvent.setPrice(price);
-		tradeEvent.setQuantity(totalQuantity);
-		tradeEvent.setFilledQuantity(filledQuantity);
-		tradeEvent.setRemainingQuantity(remainingQuantity);
-		tradeEvent.setStatus(status);
-		tradeEvent.setTimestamp(Instant.now().toString());
+		TradeEvent tradeEvent = TradeEvent.builder()
+			.runeliteEventId(runeliteEventId)
+			.itemId(itemId)
+			.itemName(itemName)
+			.offerType(offerType)
+			.price(price)
+			.quantity(totalQuantity)
+			.filledQuantity(filledQuantity)
+			.remainingQuantity(remainingQuantity)
+			.status(status)
+			.timestamp(System.currentTimeMillis())
+			.account(osrsUsername)
+			.build();
 
 		return tradeEvent;
 	}
 
-	private String getItemName(int itemId)
+	/**
+	 * Sends one batch of due trades before the plugin stops. Runs on the sync executor and
+	 * waits at most FLUSH_TIMEOUT_SECONDS, so a large backlog cannot hold up the caller;
+	 * anything not sent stays in the outbox for the next start.
+	 */
+	public void flushPendingTrades()
 	{
+		ScheduledExecutorService executor = executorService;
+		if (executor == null || executor.isShutdown())
+		{
+			return;
+		}
+		
 		try
 		{
-			if (itemManager != null)
-			{
-				return itemManager.getItemComposition(itemId).getName();
-			}
+			// Waits for the upload itself, not just for the lease to be handed out
+			CompletableFuture<Void> flush = CompletableFuture
+				.supplyAsync(() -> syncPendingTrades(1), executor)
+				.thenCompose(Function.identity());
+			flush.get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 		}
-		catch (Exception e)
+		catch (RejectedExecutionException e)
 		{
-			log.warn("Failed to get item name for itemId {}: {}", itemId, e.getMessage());
+			log.debug("Sync executor stopped before the flush could run");
+		}
+		catch (TimeoutException e)
+		{
+			log.info("Flush did not finish within {}s, leaving the rest in the outbox", FLUSH_TIMEOUT_SECONDS);
+		}
+		catch (ExecutionException e)
+		{
+			log.warn("Failed to flush pending trades", e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
 		}
-		
-		// Fallback if ItemManager is not available
-		return "Item " + itemId;
-	}
-
-	private String detectOsrsUsername()
-	{
-		// This will be set by the plugin when username is detected
-		// Keep this method for backwards compatibility
-		return osrsUsername;
 	}
 
-	public void flushPendingTrades()
+	private void syncPendingTrades()
 	{
-		syncPendingTrades();
+		syncPendingTrades(Integer.MAX_VALUE);
 	}
 
-	private void syncPendingTrades()
+	/**
+	 * Every way out of here either leaves a wake armed or waits for
+	 * {@link #onAuthenticated()}, so a backlog is never stuck until the next trade.
+	 *
+	 * @param maxBatches upper bound on batches leased in this round
+	 * @return completes once every upload started by this round has finished
+	 */
+	private CompletableFuture<Void> syncPendingTrades(int maxBatches)
 	{
 		// Refresh token if needed
 		if (authService.isAuthenticated() && !authService.refreshTokenIfNeeded())
 		{
-			log.warn("Token refresh failed, skipping sync");
-			return;
-		}
-		
-		// Load persisted trades and combine with in-memory queue
-		List<TradeEvent> allTrades = new ArrayList<>(localStorage.loadPendingTrades());
-		
-		// Add in-memory trades to the list
-		while (!pendingTrades.isEmpty())
-		{
-			TradeEvent trade = pendingTrades.poll();
-			if (trade != null)
+			if (authService.isAuthenticated())
 			{
-				allTrades.add(trade);
+				// Still holding a token, so the refresh failed for a reason that may pass
+				scheduleAuthRetry();
+				return CompletableFuture.completedFuture(null);
 			}
+			// The refresh token was rejected and the tokens cleared; fall through and wait
+			// for the next login
 		}
-		
-		if (allTrades.isEmpty())
-		{
-			return;
-		}
+		authRetryAttempts.set(0);
 		
 		// Check authentication
 		String token = authService.getAccessToken();
 		if (token == null || token.isEmpty())
 		{
-			log.debug("No authentication token, queuing {} trades locally", allTrades.size());
-			if (notificationService != null)
+			int queued = tradeStore.getPendingTradeCount();
+			if (queued > 0)
 			{
-				notificationService.showSyncQueued(allTrades.size());
+				log.debug("No authentication token, queuing {} trades locally until login", queued);
+				if (notificationService != null)
+				{
+					notificationService.showSyncQueued(queued);
+				}
 			}
-			return;
+			return CompletableFuture.completedFuture(null);
 		}
 
-		// Batch up to 100 trades for sync
-		List<TradeEvent> batch = allTrades.stream()
-			.limit(100)
-			.toList();
-
-		if (batch.isEmpty())
+		// Arms the next wake itself once the last upload of the round has finished
+		return drainBacklog(maxBatches);
+	}
+	
+	private void scheduleAuthRetry()
+	{
+		long delaySeconds = SyncScheduler.backoffSeconds(authRetryAttempts.incrementAndGet());
+		log.warn("Token refresh failed, retrying sync in {}s", delaySeconds);
+		if (config.autoSync())
+		{
+			syncScheduler.scheduleAt(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(delaySeconds));
+		}
+	}
+	
+	private void onAuthenticated()
+	{
+		SyncScheduler scheduler = syncScheduler;
+		if (scheduler != null && config.autoSync())
+		{
+			log.debug("Authenticated, syncing queued trades");
+			scheduler.scheduleNow();
+		}
+	}
+	
+	private void scheduleNextWake()
+	{
+		if (!config.autoSync())
 		{
 			return;
 		}
-
-		log.info("Syncing {} trades to server", batch.size());
 		
-		// Send batch to server
-		sendTradesToServer(batch);
+		// Failed batches also arm the scheduler with their own retry time and hold it back
+		// while the server is backing us off, so this never turns into a retry storm
+		Long nextDueAt = tradeStore.getNextDueAt();
+		if (nextDueAt != null)
+		{
+			syncScheduler.scheduleAt(TimeUnit.SECONDS.toMillis(nextDueAt));
+		}
 	}
-
-	private void sendTradesToServer(List<TradeEvent> trades)
+	
+	/**
+	 * Leases and sends up to maxBatches batches, or until the outbox has nothing due,
+	 * keeping up to maxInFlightRequests uploads running at once. Stops leasing on the first
+	 * failure so an outage does not turn into a burst of doomed requests; the regular
+	 * interval takes over from there.
+	 *
+	 * The outbox is the only source of trades: each batch is leased atomically, then
+	 * acknowledged on success or released with retry info on failure, so no trade is
+	 * sent twice by concurrent uploads and none is lost if an upload dies midway.
+	 *
+	 * Nothing here waits for a reply. Each finished upload hands the next lease back to the
+	 * sync executor, which stays free for maintenance and other background work meanwhile.
+	 * Only one drain runs at a time; asking for another returns the one already running.
+	 */
+	private CompletableFuture<Void> drainBacklog(int maxBatches)
 	{
-		String token = authService.getAccessToken();
+		Drain running = activeDrain;
+		if (running != null)
+		{
+			return running.done;
+		}
 		
-		try
+		int maxInFlight = Math.max(1, Math.min(config.maxInFlightRequests(), MAX_IN_FLIGHT_REQUESTS_LIMIT));
+		Drain drain = new Drain(maxBatches, maxInFlight);
+		activeDrain = drain;
+		drain.fill();
+		return drain.done;
+	}
+	
+	/**
+	 * State of one drainBacklog round. Leasing only happens on the sync executor; upload
+	 * callbacks just record the outcome and queue the next fill.
+	 */
+	private final class Drain
+	{
+		private final int maxInFlight;
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicBoolean failed = new AtomicBoolean();
+		private final CompletableFuture<Void> done = new CompletableFuture<>();
+		// Only touched on the sync executor
+		private int batchesLeft;
+		private boolean exhausted;
+		private int sentTrades;
+		private int sentBatches;
+		
+		private Drain(int maxBatches, int maxInFlight)
 		{
-			TradeBatchRequest request = new TradeBatchRequest();
-			request.setRuneliteClientId(runeliteClientId);
-			request.setOsrsUsername(osrsUsername);
-			request.setTrades(trades);
-
-			// tRPC HTTP format: POST /trpc/{router}.{procedure}
-			// Body format: { "input": {...} }
-			Map<String, Object> trpcRequest = new HashMap<>();
-			trpcRequest.put("input", request);
-			
-			String json = gson.toJson(trpcRequest);
+			this.batchesLeft = maxBatches;
+			this.maxInFlight = maxInFlight;
+		}
+		
+		private void fill()
+		{
+			if (done.isDone())
+			{
+				return;
+			}
 			
-			RequestBody body = RequestBody.create(
-				json,
-				MediaType.parse("application/json; charset=utf-8")
-			);
-
-			Request httpRequest = new Request.Builder()
-				.url(config.apiUrl() + "/trpc/runelite.trades.submit")
-				.post(body)
-				.addHeader("Authorization", "Bearer " + token)
-				.addHeader("Content-Type", "application/json")
-				.build();
-
-			try (Response response = httpClient.newCall(httpRequest).execute())
+			while (hasMoreToSend() && inFlight.get() < maxInFlight)
 			{
-				if (response.isSuccessful())
+				// Re-read every batch so feedback from the previous reply applies immediately
+				int size = batchSizer.nextBatchSize(averageTradeBytes);
+				List<PendingTrade> batch = tradeStore.leasePendingTrades(size, LEASE_SECONDS);
+				if (batch.isEmpty())
+				{
+					exhausted = true;
+					break;
+				}
+				
+				batchesLeft--;
+				sentBatches++;
+				sentTrades += batch.size();
+				inFlight.incrementAndGet();
+				log.info("Syncing {} trades to server", batch.size());
+				try
 				{
-					// Success - remove from database and reset failure count
-					for (TradeEvent trade : trades)
-					{
-						localStorage.removePendingTrade(trade.getRuneliteEventId());
-					}
-					
-					consecutiveFailures = 0;
-					
-					log.info("Successfully synced {} trades", trades.size());
-					
-					if (notificationService != null)
-					{
-						notificationService.showSyncSuccess(trades.size());
-					}
+					sendTradesToServer(batch, this::onBatchComplete);
 				}
-				else
+				catch (RuntimeException e)
 				{
-					handleSyncError(response.code(), response.body().string(), trades);
+					// The request never went out; its lease expires and the trades come back
+					log.error("Failed to start upload of {} trades", batch.size(), e);
+					failed.set(true);
+					inFlight.decrementAndGet();
 				}
 			}
+			
+			// Uploads still running queue another fill when they finish
+			if (!hasMoreToSend() && inFlight.get() == 0)
+			{
+				finish();
+			}
+		}
+		
+		private boolean hasMoreToSend()
+		{
+			return !failed.get() && !exhausted && batchesLeft > 0;
 		}
-		catch (IOException e)
+		
+		// Runs on an OkHttp thread, after the batch was acked or rescheduled
+		private void onBatchComplete(boolean success)
 		{
-			log.error("Network error syncing trades", e);
-			consecutiveFailures++;
+			if (!success)
+			{
+				failed.set(true);
+			}
+			inFlight.decrementAndGet();
 			
-			// Update retry info for failed trades
-			for (TradeEvent trade : trades)
+			ScheduledExecutorService executor = executorService;
+			try
+			{
+				if (executor == null)
+				{
+					throw new RejectedExecutionException("Sync executor stopped");
+				}
+				executor.execute(this::fill);
+			}
+			catch (RejectedExecutionException e)
+			{
+				// Shutting down; whatever is left stays in the outbox
+				if (inFlight.get() == 0 && done.complete(null))
+				{
+					clearActive();
+				}
+			}
+		}
+		
+		private void finish()
+		{
+			if (!done.complete(null))
 			{
-				updateTradeRetryInfo(trade, "Network error: " + e.getMessage());
+				return;
 			}
 			
-			if (notificationService != null)
+			clearActive();
+			if (sentBatches > 1)
 			{
-				if (consecutiveFailures >= MAX_RETRY_ATTEMPTS)
+				log.info("Drained {} trades in {} batches with up to {} requests in flight",
+					sentTrades, sentBatches, maxInFlight);
+			}
+			scheduleNextWake();
+		}
+		
+		private void clearActive()
+		{
+			// A drain from before a restart must not clear the one that replaced it
+			if (activeDrain == this)
+			{
+				activeDrain = null;
+			}
+		}
+	}
+
+	private void sendTradesToServer(List<PendingTrade> batch, Consumer<Boolean> onComplete)
+	{
+		String token = authService.getAccessToken();
+
+		// tRPC HTTP format: POST /trpc/{router}.{procedure}
+		// Body format: { "input": {...} }, streamed straight into the connection
+		TradeBatchRequestBody body = createRequestBody(batch);
+
+		Request.Builder requestBuilder = new Request.Builder()
+			.url(config.apiUrl() + "/trpc/runelite.trades.submit")
+			.post(body)
+			.addHeader("Authorization", "Bearer " + token)
+			.addHeader("Content-Type", "application/json");
+		
+		if (body.isGzip())
+		{
+			requestBuilder.addHeader("Content-Encoding", "gzip");
+		}
+		
+		if (body.isCompact())
+		{
+			requestBuilder.addHeader(CompactTradeBatchCodec.ENCODING_HEADER, CompactTradeBatchCodec.ENCODING_NAME);
+		}
+		
+		Request httpRequest = requestBuilder.build();
+
+		long startNanos = System.nanoTime();
+		httpClient.getClient().newCall(httpRequest).enqueue(new Callback()
+		{
+			@Override
+			public void onResponse(Call call, Response response)
+			{
+				boolean success = false;
+				try (response)
 				{
-					notificationService.showError("Sync Failed", 
-						"Unable to sync trades after " + MAX_RETRY_ATTEMPTS + " attempts. Check connection.",
-						"Retry Now",
-						this::triggerManualSync);
+					averageTradeBytes = (int) (body.getUncompressedBytes() / batch.size());
+					recordBatchFeedback(response.code(), startNanos);
+					logConnectionReuse(call);
+					updateEncodingSupport(response);
+					updateBatchLimit(response);
+					success = handleSyncResponse(response, batch);
+				}
+				catch (IOException e)
+				{
+					handleNetworkError(e, batch);
 				}
-				else
+				finally
 				{
-					notificationService.showConnectionError();
+					onComplete.accept(success);
 				}
 			}
+
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
+				// Timeouts and dropped connections count as backpressure too
+				batchSizer.onBackpressure();
+				try
+				{
+					handleNetworkError(e, batch);
+				}
+				finally
+				{
+					onComplete.accept(false);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Plain JSON batches are the stored payloads copied into the envelope as they are.
+	 * Only the compact encoding, which re-encodes every field, decodes the trades.
+	 */
+	private TradeBatchRequestBody createRequestBody(List<PendingTrade> batch)
+	{
+		if (compactEncodingSupported)
+		{
+			List<TradeEvent> trades = new ArrayList<>(batch.size());
+			for (PendingTrade pending : batch)
+			{
+				trades.add(pending.getTrade());
+			}
+			
+			TradeBatchRequest request = new TradeBatchRequest();
+			request.setRuneliteClientId(runeliteClientId);
+			request.setOsrsUsername(osrsUsername);
+			request.setTrades(trades);
+			if (CompactTradeBatchCodec.canEncode(request))
+			{
+				return new TradeBatchRequestBody(gson, request, config.compressUploads(), true);
+			}
+		}
+		
+		List<byte[]> payloads = new ArrayList<>(batch.size());
+		for (PendingTrade pending : batch)
+		{
+			payloads.add(pending.getPayload());
+		}
+		return new TradeBatchRequestBody(gson, runeliteClientId, osrsUsername, payloads, config.compressUploads());
+	}
+	
+	private void recordBatchFeedback(int responseCode, long startNanos)
+	{
+		long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		if (responseCode == 429 || responseCode >= 500)
+		{
+			batchSizer.onBackpressure();
+		}
+		else if (responseCode >= 200 && responseCode < 300)
+		{
+			batchSizer.onSuccess(latencyMillis);
+		}
+		
+		log.debug("Sync reply {} in {}ms, next batch size {}", responseCode, latencyMillis, batchSizer.getBatchSize());
+	}
+	
+	private void logConnectionReuse(Call call)
+	{
+		String host = call.request().url().host();
+		HttpConnectionMetrics.HostStats stats = httpClient.getMetrics().getStats(host);
+		log.debug("Connections to {}: {} reused, {} opened, {} TLS handshakes",
+			host, stats.getConnectionsReused(), stats.getConnectionsOpened(), stats.getTlsHandshakes());
+	}
+	
+	private void updateEncodingSupport(Response response)
+	{
+		boolean supported = CompactTradeBatchCodec.isSupportedBy(
+			response.header(CompactTradeBatchCodec.SUPPORTED_HEADER));
+		if (supported != compactEncodingSupported)
+		{
+			log.info("Server {} compact trade batches", supported ? "accepts" : "no longer accepts");
+			compactEncodingSupported = supported;
+		}
+	}
+	
+	/**
+	 * Lets the batch sizer grow past MAX_SYNC_BATCH_SIZE once the server says it accepts
+	 * larger batches. Without the header the known server limit applies.
+	 */
+	private void updateBatchLimit(Response response)
+	{
+		int limit = MAX_SYNC_BATCH_SIZE;
+		String advertised = response.header(MAX_BATCH_SIZE_HEADER);
+		if (advertised != null)
+		{
+			try
+			{
+				limit = Math.min(Integer.parseInt(advertised.trim()), MAX_ADVERTISED_BATCH_SIZE);
+			}
+			catch (NumberFormatException e)
+			{
+				log.debug("Ignoring malformed {} header: {}", MAX_BATCH_SIZE_HEADER, advertised);
+			}
+		}
+		
+		if (limit != batchSizer.getMaxBatchSize())
+		{
+			log.info("Server accepts up to {} trades per batch", limit);
+			batchSizer.setMaxBatchSize(limit);
+		}
+	}
+	
+	/**
+	 * Current adaptive upload batch size.
+	 */
+	public int getCurrentBatchSize()
+	{
+		return batchSizer.getBatchSize();
+	}
+	
+	private boolean handleSyncResponse(Response response, List<PendingTrade> trades) throws IOException
+	{
+		if (!response.isSuccessful())
+		{
+			long retryAfterSeconds = SyncScheduler.parseRetryAfterSeconds(response.header("Retry-After"), Instant.now());
+			handleSyncError(response.code(), response.body().string(), retryAfterSeconds, trades);
+			return false;
+		}
+		
+		// Success - acknowledge in the outbox (one transaction) and reset failure count
+		List<String> eventIds = new ArrayList<>(trades.size());
+		for (PendingTrade pending : trades)
+		{
+			eventIds.add(pending.getRuneliteEventId());
+		}
+		tradeStore.ackPendingTrades(eventIds);
+		acknowledgedEventIds.addAll(eventIds);
+		
+		consecutiveFailures.set(0);
+		
+		log.info("Successfully synced {} trades", trades.size());
+		
+		if (notificationService != null)
+		{
+			notificationService.showSyncSuccess(trades.size());
+		}
+		return true;
+	}
+	
+	private void handleNetworkError(IOException e, List<PendingTrade> trades)
+	{
+		log.error("Network error syncing trades", e);
+		int failures = consecutiveFailures.incrementAndGet();
+		
+		// Update retry info for failed trades
+		scheduleRetries(trades, "Network error: " + e.getMessage(), -1);
+		
+		if (notificationService != null)
+		{
+			if (failures >= MAX_RETRY_ATTEMPTS)
+			{
+				notificationService.showError("Sync Failed", 
+					"Unable to sync trades after " + MAX_RETRY_ATTEMPTS + " attempts. Check connection.",
+					"Retry Now",
+					this::triggerManualSync);
+			}
+			else
+			{
+				notificationService.showConnectionError();
+			}
 		}
 	}
 
@@ -392,21 +1056,29 @@ public class TradeSyncService
 	
 	// New helper methods for enhanced functionality
 	
-	private void loadPersistedTrades()
+	/**
+	 * Crash recovery only reads outbox metadata (count and next due time, both answered
+	 * from an index). Trades themselves are deserialized by the sync loop as it leases
+	 * them, and leases left over from a previous session simply expire.
+	 */
+	private void recoverOutbox()
 	{
 		try
 		{
-			List<TradeEvent> persistedTrades = localStorage.loadPendingTrades();
-			pendingTrades.addAll(persistedTrades);
+			long startNanos = System.nanoTime();
+			int persisted = tradeStore.getPendingTradeCount();
+			Long nextDueAt = tradeStore.getNextDueAt();
+			long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
 			
-			if (!persistedTrades.isEmpty())
+			if (persisted > 0 && nextDueAt != null)
 			{
-				log.info("Loaded {} persisted trades from database", persistedTrades.size());
+				log.info("Recovered outbox with {} persisted trades, next due at {} ({}ms)",
+					persisted, Instant.ofEpochSecond(nextDueAt), elapsedMillis);
 			}
 		}
 		catch (Exception e)
 		{
-			log.error("Error loading persisted trades", e);
+			log.error("Error recovering persisted trades", e);
 			if (notificationService != null)
 			{
 				notificationService.showDatabaseError();
@@ -414,9 +1086,30 @@ public class TradeSyncService
 		}
 	}
 	
-	private void handleSyncError(int responseCode, String responseBody, List<TradeEvent> trades)
+	/**
+	 * Drops expired outbox rows and history partitions, then hands the freed pages back to
+	 * the file system. Each step works in small transactions, so uploads and new trades
+	 * keep flowing while it runs.
+	 */
+	private void runMaintenance()
+	{
+		try
+		{
+			tradeStore.cleanupOldTrades(OUTBOX_MAX_AGE_DAYS);
+			localStorage.compactTradeHistory(config.historyRetentionDays());
+			localStorage.reclaimSpace();
+			itemMetadataCache.save();
+		}
+		catch (Exception e)
+		{
+			log.error("Error running storage maintenance", e);
+		}
+	}
+	
+	private void handleSyncError(int responseCode, String responseBody, long retryAfterSeconds,
+		List<PendingTrade> trades)
 	{
-		consecutiveFailures++;
+		consecutiveFailures.incrementAndGet();
 		
 		String errorMessage = "Server error: " + responseCode;
 		if (responseBody != null && !responseBody.isEmpty())
@@ -430,23 +1123,24 @@ public class TradeSyncService
 		switch (responseCode)
 		{
 			case 401:
-				// Authentication error
+				// Authentication error - hand the trades back untouched for after re-login
+				for (PendingTrade pending : trades)
+				{
+					tradeStore.releasePendingTradeAsync(pending.getRuneliteEventId());
+				}
 				authService.handleAuthenticationError();
 				break;
 				
 			case 429:
 				// Rate limiting
-				handleRateLimitError(responseBody, trades);
+				handleRateLimitError(retryAfterSeconds, trades);
 				break;
 				
 			case 500:
 			case 502:
 			case 503:
-				// Server errors - retry with backoff
-				for (TradeEvent trade : trades)
-				{
-					updateTradeRetryInfo(trade, errorMessage);
-				}
+				// Server errors - retry with backoff, or when the server tells us to
+				scheduleRetries(trades, errorMessage, retryAfterSeconds);
 				
 				if (notificationService != null)
 				{
@@ -457,10 +1151,7 @@ public class TradeSyncService
 				
 			default:
 				// Unknown error
-				for (TradeEvent trade : trades)
-				{
-					updateTradeRetryInfo(trade, errorMessage);
-				}
+				scheduleRetries(trades, errorMessage, retryAfterSeconds);
 				
 				if (notificationService != null)
 				{
@@ -473,66 +1164,113 @@ public class TradeSyncService
 		}
 	}
 	
-	private void handleRateLimitError(String responseBody, List<TradeEvent> trades)
+	private void handleRateLimitError(long retryAfterSeconds, List<PendingTrade> trades)
 	{
-		// Try to parse retry-after header or default to 60 seconds
-		long retryAfterSeconds = 60;
-		
-		// Update retry time for all trades
-		Instant retryTime = Instant.now().plusSeconds(retryAfterSeconds);
-		for (TradeEvent trade : trades)
-		{
-			localStorage.updateTradeRetryInfo(trade.getRuneliteEventId(), 
-				consecutiveFailures, "Rate limited", retryTime);
-		}
+		// Honour Retry-After, falling back to 60 seconds when the server does not send one
+		long waitSeconds = retryAfterSeconds >= 0 ? retryAfterSeconds : DEFAULT_RATE_LIMIT_SECONDS;
+		scheduleRetries(trades, "Rate limited", waitSeconds);
 		
 		if (notificationService != null)
 		{
-			notificationService.showRateLimitError(retryAfterSeconds);
+			notificationService.showRateLimitError(waitSeconds);
 		}
 	}
 	
-	private void updateTradeRetryInfo(TradeEvent trade, String errorMessage)
+	/**
+	 * Releases failed trades back to the outbox with their own attempt count and backoff,
+	 * never earlier than the server's Retry-After.
+	 */
+	private void scheduleRetries(List<PendingTrade> trades, String errorMessage, long retryAfterSeconds)
 	{
-		// Exponential backoff: 30s, 1m, 2m, 4m, 8m
-		long backoffSeconds = (long) (30 * Math.pow(2, Math.min(consecutiveFailures - 1, 4)));
-		Instant nextRetry = Instant.now().plusSeconds(backoffSeconds);
+		long now = System.currentTimeMillis();
+		long earliestRetry = Long.MAX_VALUE;
+		List<RetryUpdate> updates = new ArrayList<>(trades.size());
+		for (PendingTrade pending : trades)
+		{
+			int attempt = pending.getRetryCount() + 1;
+			long delaySeconds = Math.max(SyncScheduler.backoffSeconds(attempt), retryAfterSeconds);
+			long retryAt = now + TimeUnit.SECONDS.toMillis(delaySeconds);
+			earliestRetry = Math.min(earliestRetry, retryAt);
+			
+			updates.add(new RetryUpdate(pending.getRuneliteEventId(),
+				attempt, errorMessage, Instant.ofEpochMilli(retryAt), pending.getLeaseExpiresAt()));
+		}
+		tradeStore.updateRetryInfo(updates);
 		
-		localStorage.updateTradeRetryInfo(trade.getRuneliteEventId(), 
-			consecutiveFailures, errorMessage, nextRetry);
+		if (earliestRetry == Long.MAX_VALUE)
+		{
+			return;
+		}
+		
+		// Trades the aborted drain never reached are due right away; holding until the
+		// first retry keeps them from hammering a server that just failed
+		syncScheduler.holdUntil(earliestRetry);
+		if (config.autoSync())
+		{
+			syncScheduler.scheduleAt(earliestRetry);
+		}
 	}
 	
 	private void triggerManualSync()
 	{
 		log.info("Manual sync triggered by user");
-		consecutiveFailures = 0; // Reset failure count for manual retry
+		consecutiveFailures.set(0); // Reset failure count for manual retry
+		syncScheduler.clearHold();
 		executorService.execute(this::syncPendingTrades);
 	}
 	
 	public int getPendingTradeCount()
 	{
-		return pendingTrades.size() + localStorage.getPendingTradeCount();
+		return tradeStore.getPendingTradeCount();
 	}
 	
+	/**
+	 * Stops syncing and closes the outbox. Trades still in the ingest buffer are persisted
+	 * first, then pending group commits are flushed by the stores' own shutdown.
+	 */
 	public void shutdown()
 	{
-		if (executorService != null && !executorService.isShutdown())
+		if (!stopped.compareAndSet(false, true))
+		{
+			log.debug("Trade sync already shut down");
+			return;
+		}
+		
+		// The writer drains the buffer into the outbox before it exits
+		stopIngestWriter();
+		
+		ScheduledExecutorService executor = executorService;
+		if (executor != null && !executor.isShutdown())
 		{
-			executorService.shutdown();
+			syncScheduler.cancel();
+			ScheduledFuture<?> maintenance = maintenanceTask;
+			if (maintenance != null)
+			{
+				maintenance.cancel(false);
+			}
+			executor.shutdown();
 			try
 			{
-				if (!executorService.awaitTermination(5, TimeUnit.SECONDS))
+				if (!executor.awaitTermination(5, TimeUnit.SECONDS))
 				{
-					executorService.shutdownNow();
+					executor.shutdownNow();
 				}
 			}
 			catch (InterruptedException e)
 			{
-				executorService.shutdownNow();
+				executor.shutdownNow();
 				Thread.currentThread().interrupt();
 			}
 		}
 		
+		if (itemMetadataCache != null)
+		{
+			itemMetadataCache.save();
+		}
+		if (tradeStore != null && tradeStore != localStorage)
+		{
+			tradeStore.shutdown();
+		}
 		if (localStorage != null)
 		{
 			localStorage.shutdown();
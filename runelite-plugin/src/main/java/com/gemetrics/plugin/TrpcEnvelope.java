@@ -0,0 +1,87 @@
+package com.gemetrics.plugin;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+/**
+ * Streams the tRPC HTTP envelope. Requests are {@code {"input": ...}} and successful
+ * responses are {@code {"result": {"data": ...}}}.
+ *
+ * The payload is written and read in place by its own type adapter, instead of going
+ * through a Map and being serialized a second time.
+ */
+public final class TrpcEnvelope
+{
+	private TrpcEnvelope()
+	{
+	}
+
+	public static <T> String toJson(Gson gson, T input, Class<T> type)
+	{
+		StringWriter writer = new StringWriter();
+		try
+		{
+			JsonWriter out = gson.newJsonWriter(writer);
+			writeInput(out, gson.getAdapter(type), input);
+			out.flush();
+		}
+		catch (IOException e)
+		{
+			throw new JsonIOException(e);
+		}
+		return writer.toString();
+	}
+
+	public static <T> void writeInput(JsonWriter out, TypeAdapter<T> adapter, T input) throws IOException
+	{
+		out.beginObject();
+		out.name("input");
+		adapter.write(out, input);
+		out.endObject();
+	}
+
+	/**
+	 * Reads result.data from a response body, skipping everything else.
+	 *
+	 * @throws JsonParseException if the body is malformed or has no result.data
+	 */
+	public static <T> T readData(Gson gson, String json, Class<T> type)
+	{
+		try (JsonReader in = gson.newJsonReader(new StringReader(json)))
+		{
+			in.beginObject();
+			while (in.hasNext())
+			{
+				if (!"result".equals(in.nextName()))
+				{
+					in.skipValue();
+					continue;
+				}
+
+				in.beginObject();
+				while (in.hasNext())
+				{
+					if ("data".equals(in.nextName()))
+					{
+						return gson.getAdapter(type).read(in);
+					}
+					in.skipValue();
+				}
+				in.endObject();
+			}
+		}
+		catch (IOException | IllegalStateException e)
+		{
+			throw new JsonParseException("Malformed tRPC response", e);
+		}
+		throw new JsonParseException("tRPC response has no result.data");
+	}
+}
@@ -0,0 +1,134 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.AdaptiveBatchSizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveBatchSizerTest
+{
+	private AdaptiveBatchSizer sizer;
+
+	@BeforeEach
+	void setUp()
+	{
+		sizer = new AdaptiveBatchSizer(10, 50, 100, 16 * 1024, 256 * 1024, 1000);
+	}
+
+	@Test
+	void shouldGrowAdditivelyWhileFast()
+	{
+		// When
+		sizer.onSuccess(200);
+		sizer.onSuccess(200);
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(70);
+	}
+
+	@Test
+	void shouldNotGrowPastMaximum()
+	{
+		// When
+		for (int i = 0; i < 20; i++)
+		{
+			sizer.onSuccess(100);
+		}
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(100);
+		assertThat(sizer.getPayloadBytes()).isEqualTo(256 * 1024);
+	}
+
+	@Test
+	void shouldGrowPastOldCeilingOnceRaised()
+	{
+		// Given - the server says it accepts larger batches
+		sizer.setMaxBatchSize(500);
+
+		// When
+		for (int i = 0; i < 20; i++)
+		{
+			sizer.onSuccess(100);
+		}
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(500);
+	}
+
+	@Test
+	void shouldCutBatchDownWhenCeilingIsLowered()
+	{
+		// Given
+		sizer.setMaxBatchSize(500);
+		sizer.onSuccess(100);
+		sizer.onSuccess(100);
+
+		// When
+		sizer.setMaxBatchSize(100);
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(100);
+	}
+
+	@Test
+	void shouldHalveOnBackpressure()
+	{
+		// When
+		sizer.onBackpressure();
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(25);
+	}
+
+	@Test
+	void shouldNotShrinkBelowMinimum()
+	{
+		// When
+		for (int i = 0; i < 10; i++)
+		{
+			sizer.onBackpressure();
+		}
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(10);
+		assertThat(sizer.getPayloadBytes()).isEqualTo(16 * 1024);
+	}
+
+	@Test
+	void shouldShrinkOnSlowReplyAndHoldOnModeratelySlowReply()
+	{
+		// When - between target and twice the target: hold
+		sizer.onSuccess(1500);
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(50);
+
+		// When - more than twice the target: shrink
+		sizer.onSuccess(2500);
+
+		// Then
+		assertThat(sizer.getBatchSize()).isEqualTo(25);
+	}
+
+	@Test
+	void shouldLimitBatchByPayloadBudget()
+	{
+		// Given - initial byte budget is 128 KiB
+		int largeTradeBytes = 8 * 1024;
+
+		// When / Then
+		assertThat(sizer.nextBatchSize(largeTradeBytes)).isEqualTo(16);
+		assertThat(sizer.nextBatchSize(200)).isEqualTo(50);
+		assertThat(sizer.nextBatchSize(0)).isEqualTo(50);
+	}
+
+	@Test
+	void shouldRejectInconsistentLimits()
+	{
+		assertThatThrownBy(() -> new AdaptiveBatchSizer(50, 10, 100, 1024, 2048, 1000))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,175 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.CompactTradeBatchCodec;
+import com.gemetrics.plugin.TradeBatchRequest;
+import com.gemetrics.plugin.TradeBatchRequestBody;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactTradeBatchCodecTest
+{
+	private final Gson gson = new GsonBuilder().create();
+
+	@Test
+	void shouldRoundTripBatch() throws IOException
+	{
+		// Given
+		TradeBatchRequest request = createRequest(20);
+
+		// When
+		TradeBatchRequest decoded = decodeEnvelope(writeBody(request, true));
+
+		// Then
+		assertThat(decoded).isEqualTo(request);
+	}
+
+	@Test
+	void shouldRoundTripTradeWithoutItemName() throws IOException
+	{
+		// Given
+		TradeBatchRequest request = createRequest(3);
+		request.getTrades().set(1, request.getTrades().get(1).toBuilder().itemId(999_999).itemName(null).build());
+
+		// When
+		TradeBatchRequest decoded = decodeEnvelope(writeBody(request, true));
+
+		// Then
+		assertThat(decoded).isEqualTo(request);
+		assertThat(decoded.getTrades().get(1).getItemName()).isNull();
+	}
+
+	@Test
+	void shouldBeMuchSmallerThanPlainJson() throws IOException
+	{
+		// Given
+		TradeBatchRequest request = createRequest(100);
+
+		// When
+		int plainBytes = writeBody(request, false).length();
+		int compactBytes = writeBody(request, true).length();
+
+		// Then
+		assertThat(compactBytes).isLessThan(plainBytes / 2);
+	}
+
+	@Test
+	void shouldRejectTradesItCannotRepresent()
+	{
+		// Given - remainingQuantity is not quantity - filledQuantity, so it cannot be derived
+		TradeBatchRequest request = createRequest(2);
+		TradeEvent trade = request.getTrades().get(1);
+		request.getTrades().set(1, trade.toBuilder().remainingQuantity(trade.getRemainingQuantity() + 1).build());
+
+		// When / Then
+		assertThat(CompactTradeBatchCodec.canEncode(request)).isFalse();
+	}
+
+	@Test
+	void shouldRejectTradesWithoutTimestamp()
+	{
+		// Given - a trade built without a timestamp; baseTime and offsets would turn it into 0
+		TradeBatchRequest request = createRequest(2);
+		request.getTrades().set(0, request.getTrades().get(0).toBuilder().timestamp(0).build());
+
+		// When / Then
+		assertThat(CompactTradeBatchCodec.canEncode(request)).isFalse();
+	}
+
+	@Test
+	void shouldDetectAdvertisedSupport()
+	{
+		assertThat(CompactTradeBatchCodec.isSupportedBy("json, compact-v1")).isTrue();
+		assertThat(CompactTradeBatchCodec.isSupportedBy("json")).isFalse();
+		assertThat(CompactTradeBatchCodec.isSupportedBy(null)).isFalse();
+	}
+
+	@Test
+	void shouldBeDecodableByStandInServer() throws Exception
+	{
+		// Given
+		TradeBatchRequest request = createRequest(10);
+		try (MockWebServer server = new MockWebServer())
+		{
+			server.enqueue(new MockResponse()
+				.setResponseCode(200)
+				.addHeader(CompactTradeBatchCodec.SUPPORTED_HEADER, CompactTradeBatchCodec.ENCODING_NAME));
+			server.start();
+
+			// When
+			Request httpRequest = new Request.Builder()
+				.url(server.url("/trpc/runelite.trades.submit"))
+				.post(new TradeBatchRequestBody(gson, request, false, true))
+				.addHeader(CompactTradeBatchCodec.ENCODING_HEADER, CompactTradeBatchCodec.ENCODING_NAME)
+				.build();
+			try (Response response = new OkHttpClient().newCall(httpRequest).execute())
+			{
+				assertThat(response.isSuccessful()).isTrue();
+			}
+
+			// Then
+			RecordedRequest recorded = server.takeRequest();
+			assertThat(recorded.getHeader(CompactTradeBatchCodec.ENCODING_HEADER))
+				.isEqualTo(CompactTradeBatchCodec.ENCODING_NAME);
+			assertThat(decodeEnvelope(recorded.getBody().readUtf8())).isEqualTo(request);
+		}
+	}
+
+	private String writeBody(TradeBatchRequest request, boolean compact) throws IOException
+	{
+		Buffer buffer = new Buffer();
+		new TradeBatchRequestBody(gson, request, false, compact).writeTo(buffer);
+		return buffer.readUtf8();
+	}
+
+	private TradeBatchRequest decodeEnvelope(String body) throws IOException
+	{
+		JsonReader reader = new JsonReader(new StringReader(body));
+		reader.beginObject();
+		assertThat(reader.nextName()).isEqualTo("input");
+		TradeBatchRequest decoded = CompactTradeBatchCodec.decode(reader);
+		reader.endObject();
+		return decoded;
+	}
+
+	private TradeBatchRequest createRequest(int tradeCount)
+	{
+		long base = Instant.parse("2024-05-01T12:00:00Z").toEpochMilli();
+		List<TradeEvent> trades = new ArrayList<>();
+		for (int i = 0; i < tradeCount; i++)
+		{
+			TradeEvent trade = i % 2 == 0
+				? TestDataFactory.createBuyTradeEvent("Dragon bones", 2500 + i, 100)
+				: TestDataFactory.createSellTradeEvent("Dragon bones", 2600 + i, 100);
+			trades.add(trade.toBuilder()
+				.runeliteEventId("trade-" + i)
+				.itemId(TestDataFactory.Items.DRAGON_BONES)
+				.timestamp(base + i * 1500L)
+				.build());
+		}
+
+		TradeBatchRequest request = new TradeBatchRequest();
+		request.setRuneliteClientId("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+		request.setOsrsUsername("Zezima");
+		request.setTrades(trades);
+		return request;
+	}
+}
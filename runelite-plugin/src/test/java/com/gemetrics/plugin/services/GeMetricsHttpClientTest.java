@@ -0,0 +1,67 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.GeMetricsHttpClient;
+import com.gemetrics.plugin.HttpConnectionMetrics;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeMetricsHttpClientTest
+{
+	@Test
+	void shouldReusePreconnectedConnection() throws Exception
+	{
+		// Given
+		GeMetricsHttpClient httpClient = new GeMetricsHttpClient(new OkHttpClient());
+		try (MockWebServer server = new MockWebServer())
+		{
+			server.enqueue(new MockResponse().setResponseCode(200));
+			server.enqueue(new MockResponse().setResponseCode(200));
+			server.start();
+
+			// When - warm up, then the first real request
+			httpClient.preconnect(server.url("/").toString()).get(5, TimeUnit.SECONDS);
+			Request request = new Request.Builder().url(server.url("/trpc/runelite.trades.submit")).build();
+			try (Response response = httpClient.getClient().newCall(request).execute())
+			{
+				assertThat(response.isSuccessful()).isTrue();
+			}
+
+			// Then - one connection opened, by the preconnect
+			HttpConnectionMetrics.HostStats stats = httpClient.getMetrics().getStats(server.getHostName());
+			assertThat(stats.getConnectionsOpened()).isEqualTo(1);
+			assertThat(stats.getConnectionsReused()).isEqualTo(1);
+			assertThat(server.takeRequest().getMethod()).isEqualTo("HEAD");
+		}
+	}
+
+	@Test
+	void shouldCompletePreconnectForUnusableUrl() throws Exception
+	{
+		// Given
+		GeMetricsHttpClient httpClient = new GeMetricsHttpClient(new OkHttpClient());
+
+		// When / Then - a bad API URL never blocks or fails startup
+		httpClient.preconnect("not a url").get(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void shouldSetExplicitTimeouts()
+	{
+		// When
+		OkHttpClient client = new GeMetricsHttpClient(new OkHttpClient()).getClient();
+
+		// Then
+		assertThat(client.connectTimeoutMillis()).isEqualTo(10_000);
+		assertThat(client.readTimeoutMillis()).isEqualTo(30_000);
+		assertThat(client.callTimeoutMillis()).isEqualTo(60_000);
+		assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(8);
+	}
+}
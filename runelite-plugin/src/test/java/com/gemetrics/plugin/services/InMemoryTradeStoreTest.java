@@ -0,0 +1,92 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.RetryUpdate;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradeStore;
+import com.gemetrics.plugin.utils.InMemoryTradeStore;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryTradeStoreTest extends TradeStoreContractTest
+{
+	private final MutableClock clock = new MutableClock(Instant.now());
+
+	@Override
+	protected TradeStore createStore(Path directory)
+	{
+		return new InMemoryTradeStore(clock);
+	}
+
+	@Test
+	void shouldMakeRetryDueWhenClockPassesIt()
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		store.leasePendingTrades(1, 60);
+		store.updateRetryInfo(List.of(new RetryUpdate("trade-0", 1, "Test error", clock.instant().plusSeconds(30))));
+		assertThat(store.leasePendingTrades(1, 60)).isEmpty();
+
+		// When
+		clock.advance(Duration.ofSeconds(30));
+
+		// Then
+		assertThat(store.leasePendingTrades(1, 60)).hasSize(1);
+	}
+
+	@Test
+	void shouldCleanupTradesOlderThanMaxAge()
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("old-trade"));
+		clock.advance(Duration.ofDays(8));
+		store.savePendingTrade(createTestTradeEvent("new-trade"));
+
+		// When
+		store.cleanupOldTrades(7);
+
+		// Then
+		assertThat(store.loadPendingTrades()).extracting(TradeEvent::getRuneliteEventId).containsExactly("new-trade");
+	}
+
+	private static class MutableClock extends Clock
+	{
+		private volatile Instant now;
+
+		MutableClock(Instant now)
+		{
+			this.now = now;
+		}
+
+		void advance(Duration duration)
+		{
+			now = now.plus(duration);
+		}
+
+		@Override
+		public ZoneId getZone()
+		{
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone)
+		{
+			return this;
+		}
+
+		@Override
+		public Instant instant()
+		{
+			return now;
+		}
+	}
+}
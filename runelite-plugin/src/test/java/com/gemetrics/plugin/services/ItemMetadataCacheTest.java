@@ -0,0 +1,136 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.ItemMetadata;
+import com.gemetrics.plugin.ItemMetadataCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ItemMetadataCacheTest
+{
+	@TempDir
+	Path tempDir;
+
+	private File file;
+	private AtomicInteger lookups;
+	private IntFunction<ItemMetadata> resolver;
+
+	@BeforeEach
+	void setUp()
+	{
+		file = tempDir.resolve("items.bin").toFile();
+		lookups = new AtomicInteger();
+		resolver = itemId -> {
+			lookups.incrementAndGet();
+			return new ItemMetadata("Item name " + itemId, 100, itemId * 3, true);
+		};
+	}
+
+	@Test
+	void shouldResolveEachItemOnlyOnce()
+	{
+		// Given
+		ItemMetadataCache cache = new ItemMetadataCache(file, resolver);
+
+		// When
+		cache.get(536);
+		ItemMetadata metadata = cache.get(536);
+
+		// Then
+		assertThat(metadata.getName()).isEqualTo("Item name 536");
+		assertThat(metadata.getHighAlchValue()).isEqualTo(1608);
+		assertThat(lookups.get()).isEqualTo(1);
+		assertThat(cache.getMissCount()).isEqualTo(1);
+		assertThat(cache.getHitCount()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldGrowPastInitialCapacity()
+	{
+		// Given
+		ItemMetadataCache cache = new ItemMetadataCache(file, resolver);
+
+		// When - includes item id 0, which is a real item
+		for (int itemId = 0; itemId < 10_000; itemId++)
+		{
+			cache.get(itemId);
+		}
+
+		// Then
+		assertThat(cache.size()).isEqualTo(10_000);
+		for (int itemId = 0; itemId < 10_000; itemId++)
+		{
+			assertThat(cache.get(itemId).getHighAlchValue()).isEqualTo(itemId * 3);
+		}
+		assertThat(lookups.get()).isEqualTo(10_000);
+	}
+
+	@Test
+	void shouldWarmFromPreviousSession()
+	{
+		// Given
+		ItemMetadataCache previous = new ItemMetadataCache(file, resolver);
+		previous.get(536);
+		previous.get(554);
+		previous.save();
+
+		// When
+		ItemMetadataCache cache = new ItemMetadataCache(file, resolver);
+		cache.load();
+		ItemMetadata metadata = cache.get(554);
+
+		// Then - served from the file without another lookup
+		assertThat(metadata).isEqualTo(new ItemMetadata("Item name 554", 100, 1662, true));
+		assertThat(cache.getHitCount()).isEqualTo(1);
+		assertThat(lookups.get()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldNotPersistPlaceholdersForFailedLookups()
+	{
+		// Given
+		ItemMetadataCache cache = new ItemMetadataCache(file, itemId -> {
+			throw new IllegalStateException("Item definitions not loaded");
+		});
+
+		// When
+		ItemMetadata metadata = cache.get(536);
+		cache.save();
+
+		// Then - the next session tries again
+		assertThat(metadata.getName()).isEqualTo("Item 536");
+		assertThat(metadata.isKnown()).isFalse();
+		assertThat(file).doesNotExist();
+	}
+
+	@Test
+	void shouldRetryItemAfterFailedLookup()
+	{
+		// Given - ItemManager is not ready for the first lookup, e.g. right after login
+		AtomicInteger attempts = new AtomicInteger();
+		ItemMetadataCache cache = new ItemMetadataCache(file, itemId -> {
+			if (attempts.incrementAndGet() == 1)
+			{
+				throw new IllegalStateException("Item definitions not loaded");
+			}
+			return resolver.apply(itemId);
+		});
+
+		// When
+		ItemMetadata first = cache.get(536);
+		ItemMetadata second = cache.get(536);
+
+		// Then - the placeholder was not cached, so later trades get the real name
+		assertThat(first.isKnown()).isFalse();
+		assertThat(second.getName()).isEqualTo("Item name 536");
+		assertThat(cache.get(536)).isSameAs(second);
+		assertThat(attempts.get()).isEqualTo(2);
+	}
+}
@@ -0,0 +1,155 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.JournalTradeStore;
+import com.gemetrics.plugin.PendingTrade;
+import com.gemetrics.plugin.RetryUpdate;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradeStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JournalTradeStoreTest extends TradeStoreContractTest
+{
+	// Small enough that a handful of trades rolls over to a new segment
+	private static final int SEGMENT_BYTES = 2048;
+
+	@Override
+	protected TradeStore createStore(Path directory)
+	{
+		return new JournalTradeStore(directory.toFile(), SEGMENT_BYTES);
+	}
+
+	@Test
+	void shouldRecoverOutboxAfterRestart()
+	{
+		// Given
+		for (int i = 0; i < 3; i++)
+		{
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+		store.ackPendingTrade("trade-0");
+		store.leasePendingTrades(3, 60);
+		store.updateRetryInfo(List.of(new RetryUpdate("trade-1", 2, "Test error", Instant.now().minusSeconds(1))));
+
+		// When
+		store.shutdown();
+		store = createStore(tempDir);
+
+		// Then - acks and retry info survive, leases do not
+		List<PendingTrade> leased = store.leasePendingTrades(3, 60);
+		assertThat(leased).extracting(p -> p.getTrade().getRuneliteEventId())
+			.containsExactly("trade-1", "trade-2");
+		assertThat(leased.get(0).getRetryCount()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldLeaseDueTradeBehindLeasedOnes()
+	{
+		// Given - every trade is out on a lease except the newest, which failed and is due again
+		for (int i = 0; i < 200; i++)
+		{
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+		List<PendingTrade> leased = store.leasePendingTrades(200, 60);
+		PendingTrade newest = leased.get(leased.size() - 1);
+		store.updateRetryInfo(List.of(new RetryUpdate("trade-199", 1, "Test error",
+			Instant.now().minusSeconds(1), newest.getLeaseExpiresAt())));
+
+		// When
+		List<PendingTrade> next = store.leasePendingTrades(5, 60);
+
+		// Then - found from the due-time index, without walking the other 199
+		assertThat(next).extracting(PendingTrade::getRuneliteEventId).containsExactly("trade-199");
+		assertThat(store.getNextDueAt()).isGreaterThan(Instant.now().getEpochSecond());
+	}
+
+	@Test
+	void shouldRollSegmentsAndDropAcknowledgedOnes() throws IOException
+	{
+		// Given
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 30; i++)
+		{
+			ids.add("trade-" + i);
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+		assertThat(segmentCount()).isGreaterThan(1);
+
+		// When
+		store.ackPendingTrades(ids);
+
+		// Then - only the active segment is left, and nothing is replayed
+		assertThat(segmentCount()).isEqualTo(1);
+		store.shutdown();
+		store = createStore(tempDir);
+		assertThat(store.getPendingTradeCount()).isZero();
+	}
+
+	@Test
+	void shouldRememberAcknowledgedTradesAcrossRestart()
+	{
+		// Given - enough acks that the segments holding them are dropped
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 30; i++)
+		{
+			ids.add("trade-" + i);
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+		store.ackPendingTrades(ids);
+
+		// When
+		store.shutdown();
+		store = createStore(tempDir);
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		store.savePendingTrade(createTestTradeEvent("trade-29"));
+
+		// Then - replays are still recognised
+		assertThat(store.getPendingTradeCount()).isZero();
+	}
+
+	@Test
+	void shouldStopReplayAtDamagedRecord() throws IOException
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		store.savePendingTrade(createTestTradeEvent("trade-1"));
+		store.shutdown();
+
+		// When - the last byte of the second record is lost
+		File segment = tempDir.resolve("journal-0000000000000000.seg").toFile();
+		byte[] bytes = Files.readAllBytes(segment.toPath());
+		int end = bytes.length - 1;
+		while (bytes[end] == 0)
+		{
+			end--;
+		}
+		bytes[end] ^= 0x7f;
+		Files.write(segment.toPath(), bytes);
+		store = createStore(tempDir);
+
+		// Then - the intact record survives and new appends still work
+		assertThat(store.loadPendingTrades()).extracting(TradeEvent::getRuneliteEventId).containsExactly("trade-0");
+		store.savePendingTrade(createTestTradeEvent("trade-2"));
+		store.shutdown();
+		store = createStore(tempDir);
+		assertThat(store.getPendingTradeCount()).isEqualTo(2);
+	}
+
+	private long segmentCount() throws IOException
+	{
+		try (Stream<Path> files = Files.list(tempDir))
+		{
+			return files.filter(p -> p.getFileName().toString().endsWith(".seg")).count();
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.LocalTradeStorage;
+import com.gemetrics.plugin.StatementCache;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rough timings for outbox write, recovery and statement preparation paths. Excluded from the regular test run; use
+ * {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class LocalTradeStorageBenchmark
+{
+	@TempDir
+	Path tempDir;
+
+	private LocalTradeStorage storage;
+
+	@BeforeEach
+	void setUp()
+	{
+		storage = new LocalTradeStorage(tempDir.resolve("benchmark.db").toFile());
+		// Only to seed quickly; the measured calls below are synchronous
+		storage.enableGroupCommit(10, 1000);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		storage.shutdown();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1_000, 10_000})
+	void ackPerTradeVersusBulk(int tradeCount)
+	{
+		// Given
+		List<String> perTradeIds = saveTrades("single-", tradeCount);
+		List<String> bulkIds = saveTrades("bulk-", tradeCount);
+
+		// When
+		long perTradeNanos = time(() -> perTradeIds.forEach(storage::ackPendingTrade));
+		long bulkNanos = time(() -> storage.ackPendingTrades(bulkIds));
+
+		// Then
+		report("ack", tradeCount, "per-trade", perTradeNanos, "bulk", bulkNanos);
+		assertThat(storage.getPendingTradeCount()).isZero();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1_000, 10_000})
+	void removePerTradeVersusBulk(int tradeCount)
+	{
+		// Given
+		List<String> perTradeIds = saveTrades("single-", tradeCount);
+		List<String> bulkIds = saveTrades("bulk-", tradeCount);
+
+		// When
+		long perTradeNanos = time(() -> perTradeIds.forEach(storage::removePendingTrade));
+		long bulkNanos = time(() -> storage.removePendingTrades(bulkIds));
+
+		// Then
+		report("remove", tradeCount, "per-trade", perTradeNanos, "bulk", bulkNanos);
+		assertThat(storage.getPendingTradeCount()).isZero();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1_000, 10_000, 50_000})
+	void recoveryMetadataVersusFullLoad(int tradeCount)
+	{
+		// Given - a backlog left behind by a long offline session
+		saveTrades("trade-", tradeCount);
+
+		// When - what startup used to read versus what it reads now
+		long fullLoadNanos = time(() -> storage.loadPendingTrades());
+		long metadataNanos = time(() -> {
+			storage.getPendingTradeCount();
+			storage.getNextDueAt();
+		});
+
+		// Then
+		report("recover", tradeCount, "full load", fullLoadNanos, "metadata", metadataNanos);
+		assertThat(storage.getPendingTradeCount()).isEqualTo(tradeCount);
+	}
+
+	@Test
+	void preparePerCallVersusCached() throws SQLException
+	{
+		int iterations = 20_000;
+		String select = "SELECT value FROM settings WHERE key = ?";
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:"))
+		{
+			// Given
+			try (Statement stmt = connection.createStatement())
+			{
+				stmt.execute("CREATE TABLE settings (key TEXT PRIMARY KEY, value TEXT)");
+				stmt.execute("INSERT INTO settings (key, value) VALUES ('key', 'value')");
+			}
+			StatementCache cache = new StatementCache(connection);
+
+			// When
+			long uncachedNanos = time(() -> {
+				for (int i = 0; i < iterations; i++)
+				{
+					try (PreparedStatement stmt = connection.prepareStatement(select))
+					{
+						querySetting(stmt);
+					}
+					catch (SQLException e)
+					{
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			long cachedNanos = time(() -> {
+				for (int i = 0; i < iterations; i++)
+				{
+					try
+					{
+						querySetting(cache.prepare(select));
+					}
+					catch (SQLException e)
+					{
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+
+			// Then
+			System.out.printf("select: prepare per call %d ns/op, cached %d ns/op%n",
+				uncachedNanos / iterations, cachedNanos / iterations);
+			assertThat(cache.size()).isEqualTo(1);
+			cache.close();
+		}
+	}
+
+	private static void querySetting(PreparedStatement stmt) throws SQLException
+	{
+		stmt.setString(1, "key");
+		try (ResultSet rs = stmt.executeQuery())
+		{
+			rs.next();
+		}
+	}
+
+	private List<String> saveTrades(String prefix, int count)
+	{
+		List<String> ids = new ArrayList<>(count);
+		CompletableFuture<Void> lastSave = null;
+		for (int i = 0; i < count; i++)
+		{
+			String id = prefix + i;
+			lastSave = storage.savePendingTradeAsync(TestDataFactory.createTradeEvent(id));
+			ids.add(id);
+		}
+		lastSave.join();
+		return ids;
+	}
+
+	private static long time(Runnable action)
+	{
+		long start = System.nanoTime();
+		action.run();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String operation, int tradeCount, String beforeLabel, long beforeNanos,
+		String afterLabel, long afterNanos)
+	{
+		System.out.printf("%s %d trades: %s %d ms, %s %d ms (%.1fx)%n",
+			operation, tradeCount,
+			beforeLabel, TimeUnit.NANOSECONDS.toMillis(beforeNanos),
+			afterLabel, TimeUnit.NANOSECONDS.toMillis(afterNanos),
+			(double) beforeNanos / Math.max(1, afterNanos));
+	}
+}
@@ -0,0 +1,285 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.LocalTradeStorage;
+import com.gemetrics.plugin.OfferStateTracker;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import net.runelite.api.GameState;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.api.GrandExchangeOfferState;
+import net.runelite.api.GrandExchangeOfferType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OfferStateTrackerTest
+{
+	private OfferStateTracker tracker;
+
+	@Mock
+	private LocalTradeStorage localStorage;
+
+	// Backed by storage, unlike the in-memory tracker used by most tests
+	@InjectMocks
+	private OfferStateTracker storedTracker;
+
+	@BeforeEach
+	void setUp()
+	{
+		tracker = new OfferStateTracker();
+	}
+
+	@Test
+	void shouldReportFirstSightingOfOffer()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 10);
+
+		// When / Then
+		assertThat(tracker.update(0, offer, GameState.LOGGED_IN)).isTrue();
+	}
+
+	@Test
+	void shouldSuppressReplayedOffer()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 10);
+		tracker.update(0, offer, GameState.LOGGED_IN);
+
+		// When - the same offer is replayed on world hop
+		boolean changed = tracker.update(0, offer, GameState.LOGGED_IN);
+
+		// Then
+		assertThat(changed).isFalse();
+	}
+
+	@Test
+	void shouldReportProgressOnSameSlot()
+	{
+		// Given
+		tracker.update(0, TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 10), GameState.LOGGED_IN);
+
+		// When
+		boolean changed = tracker.update(0, TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 40), GameState.LOGGED_IN);
+
+		// Then
+		assertThat(changed).isTrue();
+	}
+
+	@Test
+	void shouldTrackSlotsIndependently()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createCompletedBuyOffer(
+			TestDataFactory.Items.FIRE_RUNE, 5, 1000);
+		tracker.update(0, offer, GameState.LOGGED_IN);
+
+		// When
+		boolean changed = tracker.update(1, offer, GameState.LOGGED_IN);
+
+		// Then
+		assertThat(changed).isTrue();
+	}
+
+	@Test
+	void shouldIgnoreEmptyPlaceholdersWhileLoggingIn()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.SHARKS, 1000, 50, 5);
+		tracker.update(2, offer, GameState.LOGGED_IN);
+
+		// When - login sends EMPTY for every slot, then replays the real offer
+		boolean emptyChanged = tracker.update(2, createEmptyOffer(), GameState.LOGGING_IN);
+		boolean replayChanged = tracker.update(2, offer, GameState.LOGGED_IN);
+
+		// Then
+		assertThat(emptyChanged).isFalse();
+		assertThat(replayChanged).isFalse();
+	}
+
+	@Test
+	void shouldReportNewOfferAfterSlotIsCleared()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createCompletedSellOffer(
+			TestDataFactory.Items.COAL, 150, 500);
+		tracker.update(3, offer, GameState.LOGGED_IN);
+
+		// When - the slot is collected and an identical offer is placed again
+		boolean emptyChanged = tracker.update(3, createEmptyOffer(), GameState.LOGGED_IN);
+		boolean offerChanged = tracker.update(3, offer, GameState.LOGGED_IN);
+
+		// Then
+		assertThat(emptyChanged).isFalse();
+		assertThat(offerChanged).isTrue();
+	}
+
+	@Test
+	void shouldAdvanceGenerationOnlyWhenSlotGetsNewOffer()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createCompletedSellOffer(
+			TestDataFactory.Items.COAL, 150, 500);
+		tracker.switchAccount(1L);
+		tracker.update(3, offer, GameState.LOGGED_IN);
+		int first = tracker.getOfferGeneration(3);
+
+		// When - a replay after a relog, then the slot is collected and the same offer placed again
+		tracker.switchAccount(2L);
+		tracker.switchAccount(1L);
+		tracker.update(3, offer, GameState.LOGGED_IN);
+		int replayed = tracker.getOfferGeneration(3);
+		tracker.update(3, createEmptyOffer(), GameState.LOGGED_IN);
+		tracker.update(3, offer, GameState.LOGGED_IN);
+
+		// Then - only the real new offer moves the counter
+		assertThat(first).isZero();
+		assertThat(replayed).isZero();
+		assertThat(tracker.getOfferGeneration(3)).isEqualTo(1);
+	}
+
+	@Test
+	void shouldForgetSlotsOnReset()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createCompletedBuyOffer(
+			TestDataFactory.Items.YEW_LOGS, 300, 100);
+		tracker.update(4, offer, GameState.LOGGED_IN);
+
+		// When
+		tracker.reset();
+
+		// Then
+		assertThat(tracker.update(4, offer, GameState.LOGGED_IN)).isTrue();
+	}
+
+	@Test
+	void shouldRestoreSlotsWhenSwitchingBackToAccount()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 10);
+		tracker.switchAccount(1L);
+		tracker.update(0, offer, GameState.LOGGED_IN);
+
+		// When - another account logs in, then the first one comes back
+		tracker.switchAccount(2L);
+		boolean otherAccountChanged = tracker.update(0, offer, GameState.LOGGED_IN);
+		tracker.switchAccount(1L);
+		boolean replayChanged = tracker.update(0, offer, GameState.LOGGED_IN);
+
+		// Then - the snapshot is kept in memory, so the replay is recognised without a read
+		assertThat(otherAccountChanged).isTrue();
+		assertThat(replayChanged).isFalse();
+	}
+
+	@Test
+	void shouldHoldBackOffersUntilSnapshotsAreLoaded()
+	{
+		// Given - the background read has not run yet when the account logs in
+		GrandExchangeOffer offer = TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 10);
+		List<Runnable> io = new ArrayList<>();
+		AtomicInteger loaded = new AtomicInteger();
+		storedTracker.start(io::add, loaded::incrementAndGet);
+		storedTracker.switchAccount(1L);
+
+		// When - the login replay arrives, then the saved slots are read
+		boolean changed = storedTracker.update(0, offer, GameState.LOGGED_IN);
+		when(localStorage.loadSettingsWithPrefix("offer_slots_"))
+			.thenReturn(Map.of("offer_slots_1", "BUYING,536,2500,100,10,25000,3;;;;;;;"));
+		io.forEach(Runnable::run);
+
+		// Then - nothing is reported early, and the replay matches the saved slot
+		assertThat(changed).isFalse();
+		assertThat(loaded.get()).isEqualTo(1);
+		assertThat(storedTracker.finishRestore()).isEmpty();
+		verify(localStorage, never()).loadSetting(anyString());
+	}
+
+	@Test
+	void shouldReportHeldBackChangesAfterRestore()
+	{
+		// Given
+		List<Runnable> io = new ArrayList<>();
+		storedTracker.start(io::add, () -> {});
+		storedTracker.switchAccount(1L);
+
+		// When - the offer progressed while the client was closed
+		storedTracker.update(0, TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 40), GameState.LOGGED_IN);
+		when(localStorage.loadSettingsWithPrefix("offer_slots_"))
+			.thenReturn(Map.of("offer_slots_1", "BUYING,536,2500,100,10,25000,3;;;;;;;"));
+		io.forEach(Runnable::run);
+		List<OfferStateTracker.SlotChange> changes = storedTracker.finishRestore();
+
+		// Then - the progress is reported once, keeping the saved offer's generation
+		assertThat(changes).extracting(OfferStateTracker.SlotChange::getSlot).containsExactly(0);
+		assertThat(changes.get(0).getOfferGeneration()).isEqualTo(3);
+	}
+
+	@Test
+	void shouldSaveEveryChangeInTheBackground()
+	{
+		// Given
+		List<Runnable> io = new ArrayList<>();
+		storedTracker.start(io::add, () -> {});
+		io.remove(0).run();
+		storedTracker.switchAccount(1L);
+
+		// When - a burst of changes arrives before the I/O executor gets to run
+		for (int slot = 0; slot < 3; slot++)
+		{
+			storedTracker.update(slot, TestDataFactory.createCompletedBuyOffer(
+				TestDataFactory.Items.FIRE_RUNE, 5, 1000), GameState.LOGGED_IN);
+		}
+		io.forEach(Runnable::run);
+
+		// Then - they are written without waiting for logout, as a single write
+		verify(localStorage, times(1)).saveSetting(eq("offer_slots_1"), anyString());
+	}
+
+	@Test
+	void shouldIgnoreInvalidSlots()
+	{
+		GrandExchangeOffer offer = TestDataFactory.createCompletedBuyOffer(
+			TestDataFactory.Items.FIRE_RUNE, 5, 1000);
+
+		assertThat(tracker.update(-1, offer, GameState.LOGGED_IN)).isFalse();
+		assertThat(tracker.update(OfferStateTracker.SLOT_COUNT, offer, GameState.LOGGED_IN)).isFalse();
+		assertThat(tracker.update(0, null, GameState.LOGGED_IN)).isFalse();
+	}
+
+	private GrandExchangeOffer createEmptyOffer()
+	{
+		return TestDataFactory.createMockOffer(
+			GrandExchangeOfferType.BUY,
+			GrandExchangeOfferState.EMPTY,
+			0,
+			0,
+			0,
+			0
+		);
+	}
+}
@@ -0,0 +1,74 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.ReadConnectionPool;
+import com.gemetrics.plugin.StatementCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteConfig;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReadConnectionPoolTest
+{
+	@TempDir
+	Path tempDir;
+
+	private ReadConnectionPool pool;
+
+	@BeforeEach
+	void setUp() throws SQLException
+	{
+		String dbUrl = "jdbc:sqlite:" + tempDir.resolve("pool.db");
+		try (Connection connection = DriverManager.getConnection(dbUrl);
+			 Statement stmt = connection.createStatement())
+		{
+			stmt.execute("CREATE TABLE t (id INTEGER)");
+		}
+
+		SQLiteConfig config = new SQLiteConfig();
+		config.setReadOnly(true);
+		pool = new ReadConnectionPool(dbUrl, config, 2);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		pool.close();
+	}
+
+	@Test
+	void shouldFailAcquireAfterClose()
+	{
+		// Given
+		pool.close();
+
+		// When / Then - fails straight away instead of waiting for a connection forever
+		assertThatThrownBy(pool::acquire)
+			.isInstanceOf(SQLException.class)
+			.hasMessageContaining("closed");
+	}
+
+	@Test
+	void shouldCloseConnectionReleasedAfterClose() throws SQLException
+	{
+		// Given - a reader still holding a connection when the pool closes
+		StatementCache reader = pool.acquire();
+		pool.close();
+
+		// When
+		pool.release(reader);
+
+		// Then
+		assertThat(reader.getConnection().isClosed()).isTrue();
+		assertThatThrownBy(pool::acquire).isInstanceOf(SQLException.class);
+	}
+}
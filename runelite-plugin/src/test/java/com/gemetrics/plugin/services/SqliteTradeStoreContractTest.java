@@ -0,0 +1,15 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.LocalTradeStorage;
+import com.gemetrics.plugin.TradeStore;
+
+import java.nio.file.Path;
+
+class SqliteTradeStoreContractTest extends TradeStoreContractTest
+{
+	@Override
+	protected TradeStore createStore(Path directory)
+	{
+		return new LocalTradeStorage(directory.resolve("ge-metrics-trades.db").toFile());
+	}
+}
@@ -0,0 +1,99 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.StatementCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementCacheTest
+{
+	private static final String INSERT = "INSERT INTO settings (key, value) VALUES (?, ?)";
+	private static final String SELECT = "SELECT value FROM settings WHERE key = ?";
+
+	private Connection connection;
+	private StatementCache cache;
+
+	@BeforeEach
+	void setUp() throws SQLException
+	{
+		connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+		try (Statement stmt = connection.createStatement())
+		{
+			stmt.execute("CREATE TABLE settings (key TEXT PRIMARY KEY, value TEXT)");
+		}
+		cache = new StatementCache(connection);
+	}
+
+	@AfterEach
+	void tearDown() throws SQLException
+	{
+		cache.close();
+		connection.close();
+	}
+
+	@Test
+	void shouldReuseStatementForSameSql() throws SQLException
+	{
+		// When
+		PreparedStatement first = cache.prepare(INSERT);
+		PreparedStatement second = cache.prepare(INSERT);
+
+		// Then
+		assertThat(second).isSameAs(first);
+		assertThat(cache.size()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldRebindCachedStatement() throws SQLException
+	{
+		// Given
+		insert("a", "1");
+		insert("b", "2");
+
+		// When / Then
+		assertThat(select("a")).isEqualTo("1");
+		assertThat(select("b")).isEqualTo("2");
+	}
+
+	@Test
+	void shouldCloseStatementsButNotConnection() throws SQLException
+	{
+		// Given
+		PreparedStatement stmt = cache.prepare(SELECT);
+
+		// When
+		cache.close();
+
+		// Then
+		assertThat(stmt.isClosed()).isTrue();
+		assertThat(connection.isClosed()).isFalse();
+		assertThat(cache.size()).isZero();
+	}
+
+	private void insert(String key, String value) throws SQLException
+	{
+		PreparedStatement stmt = cache.prepare(INSERT);
+		stmt.setString(1, key);
+		stmt.setString(2, value);
+		stmt.executeUpdate();
+	}
+
+	private String select(String key) throws SQLException
+	{
+		PreparedStatement stmt = cache.prepare(SELECT);
+		stmt.setString(1, key);
+		try (ResultSet rs = stmt.executeQuery())
+		{
+			return rs.next() ? rs.getString(1) : null;
+		}
+	}
+}
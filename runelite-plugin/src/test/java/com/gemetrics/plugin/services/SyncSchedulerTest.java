@@ -0,0 +1,102 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.SyncScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyncSchedulerTest
+{
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+	@AfterEach
+	void tearDown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	void shouldKeepOnlyEarliestWake() throws InterruptedException
+	{
+		// Given
+		CountDownLatch ran = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		SyncScheduler scheduler = new SyncScheduler(executor, () -> {
+			runs.incrementAndGet();
+			ran.countDown();
+		});
+		long now = System.currentTimeMillis();
+
+		// When
+		scheduler.scheduleAt(now + 60_000);
+		scheduler.scheduleAt(now + 50);
+		scheduler.scheduleAt(now + 30_000);
+
+		// Then - the later requests collapse into the single earliest wake
+		assertThat(ran.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(runs.get()).isEqualTo(1);
+		assertThat(scheduler.getNextWakeMillis()).isEqualTo(-1);
+	}
+
+	@Test
+	void shouldNotWakeBeforeHold()
+	{
+		// Given
+		SyncScheduler scheduler = new SyncScheduler(executor, () -> {});
+		long now = System.currentTimeMillis();
+		scheduler.scheduleAt(now + 1_000);
+
+		// When
+		scheduler.holdUntil(now + 120_000);
+		scheduler.scheduleAt(now);
+
+		// Then
+		assertThat(scheduler.getNextWakeMillis()).isEqualTo(now + 120_000);
+	}
+
+	@Test
+	void shouldParseRetryAfterSeconds()
+	{
+		assertThat(SyncScheduler.parseRetryAfterSeconds("120", Instant.now())).isEqualTo(120);
+		assertThat(SyncScheduler.parseRetryAfterSeconds(" 5 ", Instant.now())).isEqualTo(5);
+	}
+
+	@Test
+	void shouldParseRetryAfterHttpDate()
+	{
+		// Given
+		Instant now = Instant.parse("2015-10-21T07:28:00Z");
+
+		// When
+		long seconds = SyncScheduler.parseRetryAfterSeconds("Wed, 21 Oct 2015 07:30:00 GMT", now);
+
+		// Then
+		assertThat(seconds).isEqualTo(120);
+	}
+
+	@Test
+	void shouldRejectMissingOrInvalidRetryAfter()
+	{
+		assertThat(SyncScheduler.parseRetryAfterSeconds(null, Instant.now())).isEqualTo(-1);
+		assertThat(SyncScheduler.parseRetryAfterSeconds("soon", Instant.now())).isEqualTo(-1);
+	}
+
+	@Test
+	void shouldBackOffPerAttemptWithJitter()
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			assertThat(SyncScheduler.backoffSeconds(1)).isBetween(15L, 30L);
+			assertThat(SyncScheduler.backoffSeconds(3)).isBetween(60L, 120L);
+			assertThat(SyncScheduler.backoffSeconds(20)).isBetween(240L, 480L);
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.TradeBatchRequest;
+import com.gemetrics.plugin.TradeBatchRequestBody;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradePayload;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import okio.Buffer;
+import okio.GzipSource;
+import okio.Okio;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TradeBatchRequestBodyTest
+{
+	private final Gson gson = new GsonBuilder().create();
+
+	@Test
+	void shouldStreamSameJsonAsReflectiveEnvelope() throws IOException
+	{
+		// Given
+		TradeBatchRequest request = createRequest(3);
+		TradeBatchRequestBody body = new TradeBatchRequestBody(gson, request, false, false);
+
+		// When
+		Buffer buffer = new Buffer();
+		body.writeTo(buffer);
+
+		// Then
+		String expected = gson.toJson(Collections.singletonMap("input", request));
+		assertThat(buffer.readUtf8()).isEqualTo(expected);
+		assertThat(body.getUncompressedBytes()).isEqualTo(expected.length());
+	}
+
+	@Test
+	void shouldGzipBodyWhenEnabled() throws IOException
+	{
+		// Given
+		TradeBatchRequest request = createRequest(100);
+		TradeBatchRequestBody body = new TradeBatchRequestBody(gson, request, true, false);
+
+		// When
+		Buffer buffer = new Buffer();
+		body.writeTo(buffer);
+		long compressedBytes = buffer.size();
+		String json = Okio.buffer(new GzipSource(buffer)).readUtf8();
+
+		// Then
+		assertThat(json).isEqualTo(gson.toJson(Collections.singletonMap("input", request)));
+		assertThat(compressedBytes).isLessThan(body.getUncompressedBytes() / 4);
+	}
+
+	@Test
+	void shouldSpliceStoredPayloadsIntoSameJson() throws IOException
+	{
+		// Given
+		TradeBatchRequest request = createRequest(3);
+		List<byte[]> payloads = new ArrayList<>();
+		for (TradeEvent trade : request.getTrades())
+		{
+			payloads.add(TradePayload.encode(trade));
+		}
+		TradeBatchRequestBody body = new TradeBatchRequestBody(gson, request.getRuneliteClientId(),
+			request.getOsrsUsername(), payloads, false);
+
+		// When
+		Buffer buffer = new Buffer();
+		body.writeTo(buffer);
+
+		// Then - byte for byte what serializing the request would have produced
+		String expected = gson.toJson(Collections.singletonMap("input", request));
+		assertThat(buffer.readUtf8()).isEqualTo(expected);
+		assertThat(body.getUncompressedBytes()).isEqualTo(expected.length());
+	}
+
+	private TradeBatchRequest createRequest(int tradeCount)
+	{
+		List<TradeEvent> trades = new ArrayList<>();
+		for (int i = 0; i < tradeCount; i++)
+		{
+			trades.add(TestDataFactory.createTradeEvent("trade-" + i));
+		}
+
+		TradeBatchRequest request = new TradeBatchRequest();
+		request.setRuneliteClientId("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+		request.setOsrsUsername("Zezima");
+		request.setTrades(trades);
+		return request;
+	}
+}
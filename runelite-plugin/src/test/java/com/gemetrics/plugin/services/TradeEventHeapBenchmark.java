@@ -0,0 +1,107 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.TradeEvent;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rough retained heap per queued trade, old bean shape versus {@link TradeEvent}. Excluded
+ * from the regular test run; use {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class TradeEventHeapBenchmark
+{
+	@ParameterizedTest
+	@ValueSource(ints = {100_000, 500_000})
+	void legacyBeanVersusCompactEvent(int tradeCount)
+	{
+		// When
+		long legacyBytes = retainedBytes(tradeCount, TradeEventHeapBenchmark::createLegacyTrade);
+		long compactBytes = retainedBytes(tradeCount, TradeEventHeapBenchmark::createTrade);
+
+		// Then
+		System.out.printf("heap %d trades: legacy %d B/trade, compact %d B/trade (%.1fx)%n",
+			tradeCount, legacyBytes / tradeCount, compactBytes / tradeCount,
+			(double) legacyBytes / Math.max(1, compactBytes));
+		assertThat(compactBytes).isPositive();
+	}
+
+	private static long retainedBytes(int count, IntFunction<Object> factory)
+	{
+		long before = usedHeap();
+		List<Object> trades = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			trades.add(factory.apply(i));
+		}
+		long after = usedHeap();
+		assertThat(trades).hasSize(count);
+		return after - before;
+	}
+
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// Quantities and prices vary per trade so boxes fall outside the Integer cache, as they do in play
+	private static Object createTrade(int i)
+	{
+		return TradeEvent.builder()
+			.runeliteEventId("trade-" + i)
+			.itemId(536)
+			.itemName("Dragon bones")
+			.offerType(TradeEvent.OfferType.BUY)
+			.price(2500 + i)
+			.quantity(1000 + i)
+			.filledQuantity(1000 + i)
+			.remainingQuantity(0)
+			.status(TradeEvent.Status.COMPLETED)
+			.timestamp(System.currentTimeMillis())
+			.build();
+	}
+
+	private static Object createLegacyTrade(int i)
+	{
+		LegacyTradeEvent trade = new LegacyTradeEvent();
+		trade.runeliteEventId = "trade-" + i;
+		trade.itemId = 536;
+		trade.itemName = "Dragon bones";
+		trade.offerType = "buy";
+		trade.price = 2500 + i;
+		trade.quantity = 1000 + i;
+		trade.filledQuantity = 1000 + i;
+		trade.remainingQuantity = 0;
+		trade.status = "completed";
+		trade.timestamp = Instant.now().toString();
+		return trade;
+	}
+
+	// Field layout of TradeEvent before it moved to primitives and enums
+	private static final class LegacyTradeEvent
+	{
+		String runeliteEventId;
+		Integer itemId;
+		String itemName;
+		String offerType;
+		Integer price;
+		Integer quantity;
+		Integer filledQuantity;
+		Integer remainingQuantity;
+		String status;
+		String timestamp;
+	}
+}
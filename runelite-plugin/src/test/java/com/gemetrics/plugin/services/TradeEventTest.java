@@ -0,0 +1,78 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.TradeEvent;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TradeEventTest
+{
+	private final Gson gson = new Gson();
+
+	@Test
+	void shouldKeepTheApiWireShape()
+	{
+		// Given
+		TradeEvent trade = TradeEvent.builder()
+			.runeliteEventId("trade-0")
+			.itemId(536)
+			.itemName("Dragon bones")
+			.offerType(TradeEvent.OfferType.BUY)
+			.price(2500)
+			.quantity(100)
+			.filledQuantity(100)
+			.remainingQuantity(0)
+			.status(TradeEvent.Status.COMPLETED)
+			.timestamp(Instant.parse("2024-05-01T12:00:00.250Z").toEpochMilli())
+			.account("Zezima")
+			.build();
+
+		// When
+		String json = gson.toJson(trade);
+
+		// Then - same field names, lowercase enums and ISO timestamp as before; account stays local
+		assertThat(json).isEqualTo("{\"runeliteEventId\":\"trade-0\",\"itemId\":536,\"itemName\":\"Dragon bones\","
+			+ "\"offerType\":\"buy\",\"price\":2500,\"quantity\":100,\"filledQuantity\":100,\"remainingQuantity\":0,"
+			+ "\"status\":\"completed\",\"timestamp\":\"2024-05-01T12:00:00.250Z\"}");
+	}
+
+	@Test
+	void shouldLeaveOutMissingTimestamp()
+	{
+		// Given - built without a timestamp
+		TradeEvent trade = TradeEvent.builder()
+			.runeliteEventId("trade-0")
+			.itemId(536)
+			.offerType(TradeEvent.OfferType.BUY)
+			.status(TradeEvent.Status.PENDING)
+			.build();
+
+		// When
+		String json = gson.toJson(trade);
+
+		// Then - no 1970 timestamp for the server to accept, and it reads back as 0
+		assertThat(json).doesNotContain("timestamp");
+		assertThat(gson.fromJson(json, TradeEvent.class).getTimestamp()).isZero();
+	}
+
+	@Test
+	void shouldReadTradesStoredByOlderVersions()
+	{
+		// Given - written by the old bean with Instant.now().toString()
+		String json = "{\"runeliteEventId\":\"trade-0\",\"itemId\":536,\"itemName\":\"Dragon bones\","
+			+ "\"offerType\":\"sell\",\"price\":2600,\"quantity\":100,\"filledQuantity\":40,\"remainingQuantity\":60,"
+			+ "\"status\":\"canceled\",\"timestamp\":\"2024-05-01T12:00:00.123456789Z\"}";
+
+		// When
+		TradeEvent trade = gson.fromJson(json, TradeEvent.class);
+
+		// Then - sub-millisecond precision is dropped
+		assertThat(trade.getOfferType()).isEqualTo(TradeEvent.OfferType.SELL);
+		assertThat(trade.getStatus()).isEqualTo(TradeEvent.Status.CANCELED);
+		assertThat(trade.getRemainingQuantity()).isEqualTo(60);
+		assertThat(trade.getTimestamp()).isEqualTo(Instant.parse("2024-05-01T12:00:00.123Z").toEpochMilli());
+	}
+}
@@ -0,0 +1,124 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradeIngestBuffer;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TradeIngestBufferTest
+{
+	@Test
+	void shouldRoundCapacityUpToPowerOfTwo()
+	{
+		assertThat(new TradeIngestBuffer(1000).capacity()).isEqualTo(1024);
+		assertThat(new TradeIngestBuffer(8).capacity()).isEqualTo(8);
+	}
+
+	@Test
+	void shouldRejectInvalidCapacity()
+	{
+		assertThatThrownBy(() -> new TradeIngestBuffer(0))
+			.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void shouldPollInInsertionOrder()
+	{
+		// Given
+		TradeIngestBuffer buffer = new TradeIngestBuffer(4);
+		TradeEvent first = TestDataFactory.createTradeEvent("first");
+		TradeEvent second = TestDataFactory.createTradeEvent("second");
+
+		// When
+		buffer.offer(first);
+		buffer.offer(second);
+
+		// Then
+		assertThat(buffer.size()).isEqualTo(2);
+		assertThat(buffer.poll()).isSameAs(first);
+		assertThat(buffer.poll()).isSameAs(second);
+		assertThat(buffer.poll()).isNull();
+		assertThat(buffer.isEmpty()).isTrue();
+	}
+
+	@Test
+	void shouldRefuseOfferWhenFull()
+	{
+		// Given
+		TradeIngestBuffer buffer = new TradeIngestBuffer(2);
+		buffer.offer(TestDataFactory.createTradeEvent());
+		buffer.offer(TestDataFactory.createTradeEvent());
+
+		// When
+		boolean accepted = buffer.offer(TestDataFactory.createTradeEvent());
+
+		// Then
+		assertThat(accepted).isFalse();
+		assertThat(buffer.size()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldDrainUpToLimit()
+	{
+		// Given
+		TradeIngestBuffer buffer = new TradeIngestBuffer(8);
+		for (int i = 0; i < 5; i++)
+		{
+			buffer.offer(TestDataFactory.createTradeEvent("trade-" + i));
+		}
+
+		// When
+		List<TradeEvent> drained = new ArrayList<>();
+		int count = buffer.drainTo(drained, 3);
+
+		// Then
+		assertThat(count).isEqualTo(3);
+		assertThat(drained).extracting(TradeEvent::getRuneliteEventId)
+			.containsExactly("trade-0", "trade-1", "trade-2");
+		assertThat(buffer.size()).isEqualTo(2);
+	}
+
+	@Test
+	void shouldHandOverEveryTradeAcrossThreads() throws InterruptedException
+	{
+		// Given
+		int total = 100_000;
+		TradeIngestBuffer buffer = new TradeIngestBuffer(64);
+		TradeEvent[] trades = new TradeEvent[total];
+		for (int i = 0; i < total; i++)
+		{
+			trades[i] = TestDataFactory.createTradeEvent("trade-" + i);
+		}
+		List<TradeEvent> received = new ArrayList<>(total);
+
+		// When
+		Thread consumer = new Thread(() -> {
+			while (received.size() < total)
+			{
+				if (buffer.drainTo(received, 16) == 0)
+				{
+					Thread.onSpinWait();
+				}
+			}
+		});
+		consumer.start();
+
+		for (TradeEvent trade : trades)
+		{
+			while (!buffer.offer(trade))
+			{
+				Thread.onSpinWait();
+			}
+		}
+		consumer.join(10_000);
+
+		// Then
+		assertThat(received).containsExactly(trades);
+	}
+}
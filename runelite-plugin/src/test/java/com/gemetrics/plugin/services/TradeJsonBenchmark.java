@@ -0,0 +1,141 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.GeMetricsGson;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import com.google.gson.Gson;
+import com.google.gson.annotations.SerializedName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Rough serialization timings, reflective Gson versus the hand-written trade adapters.
+ * Excluded from the regular test run; use {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class TradeJsonBenchmark
+{
+	private static final int WARMUP_ROUNDS = 3;
+
+	private final Gson gson = GeMetricsGson.INSTANCE;
+
+	@ParameterizedTest
+	@ValueSource(ints = {10_000, 100_000})
+	void reflectiveVersusHandWritten(int tradeCount)
+	{
+		// Given - the same trades, once as the reflectively serialized bean shape
+		List<TradeEvent> trades = new ArrayList<>(tradeCount);
+		List<ReflectiveTradeEvent> reflectiveTrades = new ArrayList<>(tradeCount);
+		for (int i = 0; i < tradeCount; i++)
+		{
+			TradeEvent trade = TestDataFactory.createTradeEvent("trade-" + i);
+			trades.add(trade);
+			reflectiveTrades.add(new ReflectiveTradeEvent(trade));
+		}
+		String[] reflectiveJson = new String[tradeCount];
+		String[] handWrittenJson = new String[tradeCount];
+
+		for (int round = 0; round <= WARMUP_ROUNDS; round++)
+		{
+			// When
+			long reflectiveWriteNanos = time(() -> {
+				for (int i = 0; i < tradeCount; i++)
+				{
+					reflectiveJson[i] = gson.toJson(reflectiveTrades.get(i));
+				}
+			});
+			long handWrittenWriteNanos = time(() -> {
+				for (int i = 0; i < tradeCount; i++)
+				{
+					handWrittenJson[i] = gson.toJson(trades.get(i), TradeEvent.class);
+				}
+			});
+			long reflectiveReadNanos = time(() -> {
+				for (String json : reflectiveJson)
+				{
+					gson.fromJson(json, ReflectiveTradeEvent.class);
+				}
+			});
+			long handWrittenReadNanos = time(() -> {
+				for (String json : handWrittenJson)
+				{
+					gson.fromJson(json, TradeEvent.class);
+				}
+			});
+
+			// Then
+			if (round == WARMUP_ROUNDS)
+			{
+				report("write", tradeCount, reflectiveWriteNanos, handWrittenWriteNanos);
+				report("read", tradeCount, reflectiveReadNanos, handWrittenReadNanos);
+			}
+		}
+		assertThat(handWrittenJson).containsExactly(reflectiveJson);
+	}
+
+	private static long time(Runnable action)
+	{
+		long start = System.nanoTime();
+		action.run();
+		return System.nanoTime() - start;
+	}
+
+	private static void report(String operation, int tradeCount, long reflectiveNanos, long handWrittenNanos)
+	{
+		System.out.printf("json %s %d trades: reflective %d ms, hand-written %d ms (%.1fx)%n",
+			operation, tradeCount,
+			TimeUnit.NANOSECONDS.toMillis(reflectiveNanos),
+			TimeUnit.NANOSECONDS.toMillis(handWrittenNanos),
+			(double) reflectiveNanos / Math.max(1, handWrittenNanos));
+	}
+
+	// Same JSON as TradeEvent, left to Gson's reflective adapter
+	private static final class ReflectiveTradeEvent
+	{
+		enum OfferType
+		{
+			@SerializedName("buy") BUY,
+			@SerializedName("sell") SELL
+		}
+
+		enum Status
+		{
+			@SerializedName("pending") PENDING,
+			@SerializedName("completed") COMPLETED,
+			@SerializedName("canceled") CANCELED
+		}
+
+		String runeliteEventId;
+		int itemId;
+		String itemName;
+		OfferType offerType;
+		int price;
+		int quantity;
+		int filledQuantity;
+		int remainingQuantity;
+		Status status;
+		String timestamp;
+
+		ReflectiveTradeEvent(TradeEvent trade)
+		{
+			runeliteEventId = trade.getRuneliteEventId();
+			itemId = trade.getItemId();
+			itemName = trade.getItemName();
+			offerType = OfferType.valueOf(trade.getOfferType().name());
+			price = trade.getPrice();
+			quantity = trade.getQuantity();
+			filledQuantity = trade.getFilledQuantity();
+			remainingQuantity = trade.getRemainingQuantity();
+			status = Status.valueOf(trade.getStatus().name());
+			timestamp = Instant.ofEpochMilli(trade.getTimestamp()).toString();
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.PendingTrade;
+import com.gemetrics.plugin.RetryUpdate;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradeStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Behaviour every {@link TradeStore} backend must share. Each backend gets a subclass.
+ */
+abstract class TradeStoreContractTest
+{
+	@TempDir
+	Path tempDir;
+
+	protected TradeStore store;
+
+	protected abstract TradeStore createStore(Path directory);
+
+	@BeforeEach
+	void setUp()
+	{
+		store = createStore(tempDir);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		store.shutdown();
+	}
+
+	@Test
+	void shouldSaveAndCountTrades()
+	{
+		// When
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		store.savePendingTradeAsync(createTestTradeEvent("trade-1")).join();
+
+		// Then
+		assertThat(store.getPendingTradeCount()).isEqualTo(2);
+		assertThat(store.loadPendingTrades()).extracting(TradeEvent::getRuneliteEventId)
+			.containsExactly("trade-0", "trade-1");
+	}
+
+	@Test
+	void shouldIgnoreReplayedTrades()
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+
+		// When
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+
+		// Then
+		assertThat(store.getPendingTradeCount()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldIgnoreReplayOfAcknowledgedTrade()
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		store.leasePendingTrades(1, 60);
+		store.ackPendingTrade("trade-0");
+
+		// When - the server already has it, e.g. the offer is reported again after a restart
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+
+		// Then
+		assertThat(store.getPendingTradeCount()).isZero();
+		assertThat(store.leasePendingTrades(1, 60)).isEmpty();
+	}
+
+	@Test
+	void shouldLeaseEachTradeOnlyOnce()
+	{
+		// Given
+		for (int i = 0; i < 5; i++)
+		{
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+
+		// When
+		List<PendingTrade> first = store.leasePendingTrades(3, 60);
+		List<PendingTrade> second = store.leasePendingTrades(3, 60);
+
+		// Then
+		assertThat(first).extracting(p -> p.getTrade().getRuneliteEventId())
+			.containsExactly("trade-0", "trade-1", "trade-2");
+		assertThat(second).extracting(p -> p.getTrade().getRuneliteEventId())
+			.containsExactly("trade-3", "trade-4");
+		assertThat(store.leasePendingTrades(3, 60)).isEmpty();
+	}
+
+	@Test
+	void shouldAckReleaseAndRemoveTrades()
+	{
+		// Given
+		for (int i = 0; i < 4; i++)
+		{
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+		store.leasePendingTrades(4, 60);
+
+		// When
+		store.ackPendingTrades(List.of("trade-0", "trade-1"));
+		store.removePendingTrade("trade-2");
+		store.releasePendingTrade("trade-3");
+
+		// Then
+		assertThat(store.getPendingTradeCount()).isEqualTo(1);
+		assertThat(store.leasePendingTrades(4, 60)).extracting(p -> p.getTrade().getRuneliteEventId())
+			.containsExactly("trade-3");
+	}
+
+	@Test
+	void shouldHoldBackRetriesUntilDue()
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		store.savePendingTrade(createTestTradeEvent("trade-1"));
+		store.leasePendingTrades(2, 60);
+		Instant later = Instant.now().plusSeconds(60);
+
+		// When
+		store.updateRetryInfo(List.of(
+			new RetryUpdate("trade-0", 1, "Test error", Instant.now().minusSeconds(1)),
+			new RetryUpdate("trade-1", 2, "Test error", later)));
+
+		// Then - only the due trade can be leased, and it keeps its retry count
+		List<PendingTrade> leased = store.leasePendingTrades(2, 60);
+		assertThat(leased).extracting(p -> p.getTrade().getRuneliteEventId()).containsExactly("trade-0");
+		assertThat(leased.get(0).getRetryCount()).isEqualTo(1);
+		assertThat(store.getNextDueAt()).isEqualTo(later.getEpochSecond());
+	}
+
+	@Test
+	void shouldIgnoreLateRetryFromExpiredLease()
+	{
+		// Given - the first upload stalls past its lease, a second worker re-leases and acks
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+		PendingTrade expired = store.leasePendingTrades(1, -1).get(0);
+		PendingTrade current = store.leasePendingTrades(1, 60).get(0);
+		store.ackPendingTrade("trade-0");
+
+		// When - the stalled upload finally fails and tries to reschedule the trade
+		store.updateRetryInfo(List.of(new RetryUpdate("trade-0", 1, "Test error",
+			Instant.now().minusSeconds(1), expired.getLeaseExpiresAt())));
+
+		// Then - the trade stays acknowledged and is never uploaded again
+		assertThat(current.getLeaseExpiresAt()).isNotEqualTo(expired.getLeaseExpiresAt());
+		assertThat(store.getPendingTradeCount()).isZero();
+		assertThat(store.leasePendingTrades(1, 60)).isEmpty();
+	}
+
+	@Test
+	void shouldReleaseExpiredLeases()
+	{
+		// Given
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+
+		// When
+		store.leasePendingTrades(1, -1);
+
+		// Then
+		assertThat(store.leasePendingTrades(1, 60)).hasSize(1);
+	}
+
+	@Test
+	void shouldNotLeaseTradeTwiceUnderConcurrency() throws Exception
+	{
+		// Given
+		int trades = 200;
+		for (int i = 0; i < trades; i++)
+		{
+			store.savePendingTrade(createTestTradeEvent("trade-" + i));
+		}
+
+		// When - several sync workers lease small batches at once
+		ExecutorService workers = Executors.newFixedThreadPool(4);
+		Set<String> leased = ConcurrentHashMap.newKeySet();
+		AtomicInteger duplicates = new AtomicInteger();
+		List<Future<?>> results = new ArrayList<>();
+		for (int w = 0; w < 4; w++)
+		{
+			results.add(workers.submit(() -> {
+				List<PendingTrade> batch;
+				while (!(batch = store.leasePendingTrades(7, 60)).isEmpty())
+				{
+					for (PendingTrade pending : batch)
+					{
+						if (!leased.add(pending.getTrade().getRuneliteEventId()))
+						{
+							duplicates.incrementAndGet();
+						}
+					}
+				}
+			}));
+		}
+		for (Future<?> result : results)
+		{
+			result.get(30, TimeUnit.SECONDS);
+		}
+		workers.shutdown();
+
+		// Then
+		assertThat(duplicates.get()).isZero();
+		assertThat(leased).hasSize(trades);
+	}
+
+	@Test
+	void shouldCommitQueuedWritesOnShutdown()
+	{
+		// Given - a window long enough that nothing has been committed yet
+		store.enableGroupCommit(10_000, 500);
+		for (int i = 0; i < 5; i++)
+		{
+			store.savePendingTradeAsync(createTestTradeEvent("trade-" + i));
+		}
+
+		// When
+		store.shutdown();
+		store.open();
+
+		// Then
+		assertThat(store.getPendingTradeCount()).isEqualTo(5);
+	}
+
+	@Test
+	void shouldRejectSavesAfterShutdown()
+	{
+		// Given
+		store.shutdown();
+
+		// When / Then - the caller finds out instead of the trade vanishing
+		assertThatThrownBy(() -> store.savePendingTrade(createTestTradeEvent("trade-0")))
+			.isInstanceOf(IllegalStateException.class);
+		assertThat(store.savePendingTradeAsync(createTestTradeEvent("trade-1")))
+			.isCompletedExceptionally();
+
+		// Then - nothing was written behind the caller's back
+		store.open();
+		assertThat(store.getPendingTradeCount()).isZero();
+	}
+
+	@Test
+	void shouldReportNoDueTimeWhenEmpty()
+	{
+		// Then
+		assertThat(store.getNextDueAt()).isNull();
+
+		// When
+		store.savePendingTrade(createTestTradeEvent("trade-0"));
+
+		// Then - a trade without retry info is due immediately
+		assertThat(store.getNextDueAt()).isLessThanOrEqualTo(Instant.now().getEpochSecond());
+	}
+
+	protected static TradeEvent createTestTradeEvent(String id)
+	{
+		return TradeEvent.builder()
+			.runeliteEventId(id)
+			.itemId(554)
+			.itemName("Fire rune")
+			.offerType(TradeEvent.OfferType.BUY)
+			.price(5)
+			.quantity(1000)
+			.filledQuantity(1000)
+			.remainingQuantity(0)
+			.status(TradeEvent.Status.COMPLETED)
+			.timestamp(System.currentTimeMillis())
+			.build();
+	}
+}
@@ -0,0 +1,259 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.AuthenticationService;
+import com.gemetrics.plugin.GeMetricsConfig;
+import com.gemetrics.plugin.GeMetricsHttpClient;
+import com.gemetrics.plugin.ItemMetadata;
+import com.gemetrics.plugin.ItemMetadataCache;
+import com.gemetrics.plugin.LocalTradeStorage;
+import com.gemetrics.plugin.NotificationService;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradeEventIds;
+import com.gemetrics.plugin.TradeSyncService;
+import com.gemetrics.plugin.utils.InMemoryTradeStore;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import net.runelite.api.GrandExchangeOffer;
+import net.runelite.client.config.ConfigManager;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives TradeSyncService against an in-memory outbox. Field names match the service's
+ * injected fields so Mockito can tell the outbox apart from LocalTradeStorage.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TradeSyncServiceTest
+{
+	private static final String CLIENT_ID = "test-client-id";
+
+	@Mock
+	private GeMetricsConfig config;
+
+	@Mock
+	private AuthenticationService authService;
+
+	@Mock
+	private ItemMetadataCache itemMetadataCache;
+
+	@Mock
+	private ConfigManager configManager;
+
+	@Mock
+	private LocalTradeStorage localStorage;
+
+	@Mock
+	private NotificationService notificationService;
+
+	@Mock
+	private GeMetricsHttpClient httpClient;
+
+	@Spy
+	private InMemoryTradeStore tradeStore = new InMemoryTradeStore();
+
+	@InjectMocks
+	private TradeSyncService tradeSyncService;
+
+	@BeforeEach
+	void setUp()
+	{
+		when(config.enabled()).thenReturn(true);
+		when(config.apiUrl()).thenReturn("http://localhost");
+		when(config.runeliteClientId()).thenReturn(CLIENT_ID);
+		when(itemMetadataCache.get(anyInt())).thenAnswer(invocation -> ItemMetadata.unknown(invocation.getArgument(0)));
+
+		tradeSyncService.initialize();
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		tradeSyncService.shutdown();
+	}
+
+	@Test
+	void shouldDeriveSameIdForReplayedOfferState()
+	{
+		// Given
+		GrandExchangeOffer offer = TestDataFactory.createPartiallyFilledOffer(
+			TestDataFactory.Items.DRAGON_BONES, 2500, 100, 40);
+
+		// When - the same slot state is reported twice, e.g. after a world hop
+		tradeSyncService.handleTradeEvent(0, offer, 0);
+		tradeSyncService.handleTradeEvent(0, offer, 0);
+		tradeSyncService.shutdown();
+
+		// Then - both map to one event, keyed on the quantity actually traded
+		List<TradeEvent> trades = tradeStore.loadPendingTrades();
+		assertThat(trades).hasSize(1);
+		assertThat(trades.get(0).getFilledQuantity()).isEqualTo(40);
+		assertThat(trades.get(0).getRemainingQuantity()).isEqualTo(60);
+		assertThat(trades.get(0).getRuneliteEventId()).isEqualTo(TradeEventIds.derive(
+			CLIENT_ID, 0, 0, TestDataFactory.Items.DRAGON_BONES, 2500, 100, 40, "BUYING"));
+	}
+
+	@Test
+	void shouldPersistBufferedTradesOnShutdown()
+	{
+		// Given - trades handed to the writer thread, not necessarily persisted yet
+		for (int slot = 0; slot < 8; slot++)
+		{
+			tradeSyncService.handleTradeEvent(slot, TestDataFactory.createCompletedBuyOffer(
+				TestDataFactory.Items.DRAGON_BONES, 2500 + slot, 100), 0);
+		}
+
+		// When
+		tradeSyncService.shutdown();
+
+		// Then - nothing left behind in the ingest buffer
+		assertThat(tradeStore.getPendingTradeCount()).isEqualTo(8);
+		assertThat(tradeSyncService.getIngestOverflowCount()).isZero();
+	}
+
+	@Test
+	void shouldStartOnceAndSaveMetadataOnShutdown()
+	{
+		// When - startUp runs again without a shutdown in between
+		tradeSyncService.initialize();
+		tradeSyncService.shutdown();
+
+		// Then - one cache load, and the cache is written back when the plugin stops
+		verify(itemMetadataCache).load();
+		verify(itemMetadataCache).save();
+	}
+
+	@Test
+	void shouldShutDownOnlyOnce()
+	{
+		// When - the client exit and the plugin stop both shut the service down
+		tradeSyncService.shutdown();
+		tradeSyncService.shutdown();
+
+		// Then - the stores are closed and the cache written once
+		verify(itemMetadataCache, times(1)).save();
+		verify(tradeStore, times(1)).shutdown();
+	}
+
+	@Test
+	void shouldDrainBacklogOnceTokenAppears() throws Exception
+	{
+		try (MockWebServer server = new MockWebServer())
+		{
+			// Given - trades queued while logged out
+			server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+			server.start();
+			when(config.autoSync()).thenReturn(true);
+			when(config.apiUrl()).thenReturn(server.url("").toString().replaceAll("/$", ""));
+			when(httpClient.getClient()).thenReturn(new OkHttpClient());
+			tradeStore.savePendingTrade(TestDataFactory.createBuyTradeEvent("Dragon bones", 2500, 100));
+			tradeStore.savePendingTrade(TestDataFactory.createSellTradeEvent("Dragon bones", 2600, 100));
+
+			// When - a sync without a token keeps the trades and sends nothing
+			tradeSyncService.flushPendingTrades();
+			assertThat(tradeStore.getPendingTradeCount()).isEqualTo(2);
+			assertThat(server.getRequestCount()).isZero();
+
+			// When - the user logs in
+			when(authService.getAccessToken()).thenReturn("token");
+			when(authService.isAuthenticated()).thenReturn(true);
+			when(authService.refreshTokenIfNeeded()).thenReturn(true);
+			ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+			verify(authService).setAuthenticatedListener(listener.capture());
+			listener.getValue().run();
+
+			// Then - the backlog is uploaded without waiting for a new trade
+			assertThat(server.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+			awaitPendingTradeCount(0);
+		}
+	}
+
+	@Test
+	void shouldFlushOnlyOneBatchOnStop() throws Exception
+	{
+		try (MockWebServer server = new MockWebServer())
+		{
+			// Given - a backlog bigger than one batch
+			for (int i = 0; i < 3; i++)
+			{
+				server.enqueue(new MockResponse().setResponseCode(200).setBody("{}"));
+			}
+			server.start();
+			when(config.apiUrl()).thenReturn(server.url("").toString().replaceAll("/$", ""));
+			when(httpClient.getClient()).thenReturn(new OkHttpClient());
+			when(authService.getAccessToken()).thenReturn("token");
+			for (int i = 0; i < 250; i++)
+			{
+				tradeStore.savePendingTrade(TestDataFactory.createBuyTradeEvent("Dragon bones", 2500 + i, 100));
+			}
+
+			// When
+			tradeSyncService.flushPendingTrades();
+
+			// Then - one upload; the rest waits in the outbox for the next start
+			assertThat(server.getRequestCount()).isEqualTo(1);
+			assertThat(tradeStore.getPendingTradeCount()).isBetween(1, 249);
+		}
+	}
+
+	@Test
+	void shouldKeepSyncExecutorFreeWhileUploading() throws Exception
+	{
+		try (MockWebServer server = new MockWebServer())
+		{
+			// Given - a server that takes a while to answer
+			server.enqueue(new MockResponse().setResponseCode(200).setBody("{}").setHeadersDelay(2, TimeUnit.SECONDS));
+			server.start();
+			when(config.autoSync()).thenReturn(true);
+			when(config.apiUrl()).thenReturn(server.url("").toString().replaceAll("/$", ""));
+			when(httpClient.getClient()).thenReturn(new OkHttpClient());
+			when(authService.getAccessToken()).thenReturn("token");
+			when(authService.isAuthenticated()).thenReturn(true);
+			when(authService.refreshTokenIfNeeded()).thenReturn(true);
+			tradeStore.savePendingTrade(TestDataFactory.createBuyTradeEvent("Dragon bones", 2500, 100));
+
+			// When - an upload is in flight and other background work is queued
+			ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+			verify(authService).setAuthenticatedListener(listener.capture());
+			listener.getValue().run();
+			assertThat(server.takeRequest(5, TimeUnit.SECONDS)).isNotNull();
+			CountDownLatch ran = new CountDownLatch(1);
+			tradeSyncService.runInBackground(ran::countDown);
+
+			// Then - the work runs without waiting for the reply, which still arrives
+			assertThat(ran.await(1, TimeUnit.SECONDS)).isTrue();
+			awaitPendingTradeCount(0);
+		}
+	}
+
+	private void awaitPendingTradeCount(int expected) throws InterruptedException
+	{
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (tradeStore.getPendingTradeCount() != expected && System.nanoTime() < deadline)
+		{
+			Thread.sleep(10);
+		}
+		assertThat(tradeStore.getPendingTradeCount()).isEqualTo(expected);
+	}
+}
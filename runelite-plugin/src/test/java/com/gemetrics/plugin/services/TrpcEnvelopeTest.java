@@ -0,0 +1,64 @@
+package com.gemetrics.plugin.services;
+
+import com.gemetrics.plugin.GeMetricsGson;
+import com.gemetrics.plugin.TradeBatchRequest;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TrpcEnvelope;
+import com.gemetrics.plugin.utils.TestDataFactory;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TrpcEnvelopeTest
+{
+	private final Gson gson = GeMetricsGson.INSTANCE;
+
+	@Test
+	void shouldRoundTripBatchThroughEnvelope()
+	{
+		// Given
+		TradeBatchRequest request = new TradeBatchRequest();
+		request.setRuneliteClientId("7c9e6679-7425-40de-944b-e07fc1f90ae7");
+		request.setOsrsUsername("Zezima");
+		request.setTrades(Arrays.asList(
+			TestDataFactory.createBuyTradeEvent("Dragon bones", 2500, 100),
+			TestDataFactory.createSellTradeEvent("Fire rune", 5, 1000)));
+
+		// When
+		String json = TrpcEnvelope.toJson(gson, request, TradeBatchRequest.class);
+		String response = "{\"result\":{\"data\":" + json.substring("{\"input\":".length(), json.length() - 1) + "}}";
+		TradeBatchRequest read = TrpcEnvelope.readData(gson, response, TradeBatchRequest.class);
+
+		// Then - millisecond timestamps survive the ISO round trip exactly
+		assertThat(json).startsWith("{\"input\":{\"runeliteClientId\":");
+		assertThat(read).isEqualTo(request);
+	}
+
+	@Test
+	void shouldSkipUnknownFieldsInResponse()
+	{
+		// Given
+		String response = "{\"id\":null,\"result\":{\"type\":\"data\",\"data\":"
+			+ "{\"runeliteEventId\":\"trade-0\",\"serverOnly\":{\"a\":[1,2]},\"offerType\":\"buy\",\"price\":5}}}";
+
+		// When
+		TradeEvent trade = TrpcEnvelope.readData(gson, response, TradeEvent.class);
+
+		// Then
+		assertThat(trade.getRuneliteEventId()).isEqualTo("trade-0");
+		assertThat(trade.getOfferType()).isEqualTo(TradeEvent.OfferType.BUY);
+		assertThat(trade.getPrice()).isEqualTo(5);
+	}
+
+	@Test
+	void shouldRejectResponseWithoutData()
+	{
+		assertThatThrownBy(() -> TrpcEnvelope.readData(gson, "{\"error\":{\"message\":\"nope\"}}", TradeEvent.class))
+			.isInstanceOf(JsonParseException.class);
+	}
+}
@@ -0,0 +1,302 @@
+package com.gemetrics.plugin.utils;
+
+import com.gemetrics.plugin.PendingTrade;
+import com.gemetrics.plugin.RetryUpdate;
+import com.gemetrics.plugin.TradeEvent;
+import com.gemetrics.plugin.TradePayload;
+import com.gemetrics.plugin.TradeStore;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TradeStore} that keeps the outbox in memory, for exercising and benchmarking the
+ * sync pipeline without disk I/O.
+ *
+ * There is no global lock: trades are indexed by event id and by insertion order in
+ * concurrent maps, and each trade's lease and retry state is guarded by the trade itself,
+ * so a lease is claimed at most once however many threads lease at the same time.
+ * Time comes from the given clock so tests can move it forward.
+ */
+public class InMemoryTradeStore implements TradeStore
+{
+	// Same retention as acknowledged rows in LocalTradeStorage
+	private static final long ACKED_RETENTION_SECONDS = 24 * 60 * 60;
+
+	private final Clock clock;
+	private final AtomicLong nextSequence = new AtomicLong(1);
+	private final ConcurrentHashMap<String, Entry> byEventId = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, Entry> bySequence = new ConcurrentSkipListMap<>();
+	// Acknowledged event ids and when (epoch seconds), so replays of them are ignored
+	private final ConcurrentHashMap<String, Long> acknowledged = new ConcurrentHashMap<>();
+	private volatile boolean closed;
+
+	public InMemoryTradeStore()
+	{
+		this(Clock.systemUTC());
+	}
+
+	public InMemoryTradeStore(Clock clock)
+	{
+		this.clock = clock;
+	}
+
+	private static final class Entry
+	{
+		final long sequence;
+		final long createdAt;
+		final String runeliteEventId;
+		final byte[] payload;
+		int retryCount;
+		Long nextRetryAt;
+		Long leaseExpiresAt;
+
+		Entry(long sequence, long createdAt, String runeliteEventId, byte[] payload)
+		{
+			this.sequence = sequence;
+			this.createdAt = createdAt;
+			this.runeliteEventId = runeliteEventId;
+			this.payload = payload;
+		}
+
+		synchronized long dueAt()
+		{
+			if (leaseExpiresAt != null)
+			{
+				return leaseExpiresAt;
+			}
+			return nextRetryAt != null ? nextRetryAt : 0;
+		}
+
+		synchronized PendingTrade tryLease(long now, long leaseSeconds)
+		{
+			if (dueAt() > now)
+			{
+				return null;
+			}
+			leaseExpiresAt = now + leaseSeconds;
+			return new PendingTrade(sequence, createdAt, retryCount, runeliteEventId, payload, leaseExpiresAt);
+		}
+	}
+
+	@Override
+	public void savePendingTrade(TradeEvent trade)
+	{
+		if (trade == null || trade.getRuneliteEventId() == null) return;
+		if (closed)
+		{
+			throw new IllegalStateException("Trade store is shut down");
+		}
+		if (acknowledged.containsKey(trade.getRuneliteEventId())) return;
+
+		// Both indexes change inside the per-key compute, so a concurrent remove of the
+		// same event can never leave one of them behind
+		byEventId.computeIfAbsent(trade.getRuneliteEventId(), eventId -> {
+			Entry entry = new Entry(nextSequence.getAndIncrement(), now(), eventId, TradePayload.encode(trade));
+			bySequence.put(entry.sequence, entry);
+			return entry;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> savePendingTradeAsync(TradeEvent trade)
+	{
+		try
+		{
+			savePendingTrade(trade);
+		}
+		catch (IllegalStateException e)
+		{
+			return CompletableFuture.failedFuture(e);
+		}
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public List<TradeEvent> loadPendingTrades()
+	{
+		long now = now();
+		List<TradeEvent> trades = new ArrayList<>();
+		for (Entry entry : bySequence.values())
+		{
+			synchronized (entry)
+			{
+				if (entry.nextRetryAt == null || entry.nextRetryAt <= now)
+				{
+					trades.add(TradePayload.decode(entry.payload));
+				}
+			}
+		}
+		return trades;
+	}
+
+	@Override
+	public List<PendingTrade> leasePendingTrades(int limit, long leaseSeconds)
+	{
+		List<PendingTrade> leased = new ArrayList<>();
+		long now = now();
+		for (Entry entry : bySequence.values())
+		{
+			if (leased.size() >= limit)
+			{
+				break;
+			}
+			PendingTrade pending = entry.tryLease(now, leaseSeconds);
+			if (pending != null)
+			{
+				leased.add(pending);
+			}
+		}
+		return leased;
+	}
+
+	@Override
+	public void ackPendingTrade(String runeliteEventId)
+	{
+		if (runeliteEventId == null || !byEventId.containsKey(runeliteEventId)) return;
+
+		acknowledged.put(runeliteEventId, now());
+		removePendingTrade(runeliteEventId);
+	}
+
+	@Override
+	public void ackPendingTrades(Collection<String> runeliteEventIds)
+	{
+		if (runeliteEventIds == null) return;
+
+		for (String eventId : runeliteEventIds)
+		{
+			ackPendingTrade(eventId);
+		}
+	}
+
+	@Override
+	public void releasePendingTrade(String runeliteEventId)
+	{
+		Entry entry = runeliteEventId != null ? byEventId.get(runeliteEventId) : null;
+		if (entry != null)
+		{
+			synchronized (entry)
+			{
+				entry.leaseExpiresAt = null;
+			}
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> releasePendingTradeAsync(String runeliteEventId)
+	{
+		releasePendingTrade(runeliteEventId);
+		return CompletableFuture.completedFuture(null);
+	}
+
+	@Override
+	public void removePendingTrade(String runeliteEventId)
+	{
+		if (runeliteEventId == null) return;
+
+		byEventId.computeIfPresent(runeliteEventId, (eventId, entry) -> {
+			bySequence.remove(entry.sequence);
+			return null;
+		});
+	}
+
+	@Override
+	public void removePendingTrades(Collection<String> runeliteEventIds)
+	{
+		if (runeliteEventIds == null) return;
+
+		for (String eventId : runeliteEventIds)
+		{
+			removePendingTrade(eventId);
+		}
+	}
+
+	@Override
+	public void updateRetryInfo(Collection<RetryUpdate> updates)
+	{
+		if (updates == null) return;
+
+		for (RetryUpdate update : updates)
+		{
+			Entry entry = update != null ? byEventId.get(update.getRuneliteEventId()) : null;
+			if (entry == null)
+			{
+				continue;
+			}
+
+			synchronized (entry)
+			{
+				// Same rule as the SQLite store: only the current lease holder reschedules
+				if (entry.leaseExpiresAt == null
+					|| (update.getLeaseExpiresAt() != null && !entry.leaseExpiresAt.equals(update.getLeaseExpiresAt())))
+				{
+					continue;
+				}
+				entry.retryCount = update.getRetryCount();
+				entry.nextRetryAt = update.getNextRetryAt() != null ? update.getNextRetryAt().getEpochSecond() : null;
+				entry.leaseExpiresAt = null;
+			}
+		}
+	}
+
+	@Override
+	public void cleanupOldTrades(int maxAgeDays)
+	{
+		long now = now();
+		long cutoffTime = now - (maxAgeDays * 24L * 60 * 60);
+		for (Entry entry : bySequence.values())
+		{
+			if (entry.createdAt < cutoffTime)
+			{
+				removePendingTrade(entry.runeliteEventId);
+			}
+		}
+		acknowledged.values().removeIf(ackedAt -> ackedAt < now - ACKED_RETENTION_SECONDS);
+	}
+
+	@Override
+	public int getPendingTradeCount()
+	{
+		return byEventId.size();
+	}
+
+	@Override
+	public Long getNextDueAt()
+	{
+		Long earliest = null;
+		for (Entry entry : bySequence.values())
+		{
+			long dueAt = entry.dueAt();
+			if (earliest == null || dueAt < earliest)
+			{
+				earliest = dueAt;
+			}
+		}
+		return earliest;
+	}
+
+	@Override
+	public void open()
+	{
+		closed = false;
+	}
+
+	@Override
+	public void shutdown()
+	{
+		// Nothing to release; the outbox survives a reopen like the on-disk stores
+		closed = true;
+	}
+
+	private long now()
+	{
+		return clock.instant().getEpochSecond();
+	}
+}
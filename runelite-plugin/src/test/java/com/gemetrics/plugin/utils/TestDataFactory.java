@@ -5,7 +5,6 @@ import net.runelite.api.GrandExchangeOffer;
 import net.runelite.api.GrandExchangeOfferState;
 import net.runelite.api.GrandExchangeOfferType;
 
-import java.time.Instant;
 import java.util.UUID;
 
 import static org.mockito.Mockito.mock;
@@ -23,63 +22,64 @@ public class TestDataFactory
 	
 	public static TradeEvent createTradeEvent(String eventId)
 	{
-		TradeEvent trade = new TradeEvent();
-		trade.setRuneliteEventId(eventId);
-		trade.setItemId(554);
-		trade.setItemName("Fire rune");
-		trade.setOfferType("buy");
-		trade.setPrice(5);
-		trade.setQuantity(1000);
-		trade.setFilledQuantity(1000);
-		trade.setRemainingQuantity(0);
-		trade.setStatus("completed");
-		trade.setTimestamp(Instant.now().toString());
-		return trade;
+		return TradeEvent.builder()
+			.runeliteEventId(eventId)
+			.itemId(554)
+			.itemName("Fire rune")
+			.offerType(TradeEvent.OfferType.BUY)
+			.price(5)
+			.quantity(1000)
+			.filledQuantity(1000)
+			.remainingQuantity(0)
+			.status(TradeEvent.Status.COMPLETED)
+			.timestamp(System.currentTimeMillis())
+			.build();
 	}
 	
 	public static TradeEvent createBuyTradeEvent(String itemName, int price, int quantity)
 	{
-		TradeEvent trade = createTradeEvent();
-		trade.setItemName(itemName);
-		trade.setOfferType("buy");
-		trade.setPrice(price);
-		trade.setQuantity(quantity);
-		trade.setFilledQuantity(quantity);
-		trade.setRemainingQuantity(0);
-		return trade;
+		return createTradeEvent().toBuilder()
+			.itemName(itemName)
+			.offerType(TradeEvent.OfferType.BUY)
+			.price(price)
+			.quantity(quantity)
+			.filledQuantity(quantity)
+			.remainingQuantity(0)
+			.build();
 	}
 	
 	public static TradeEvent createSellTradeEvent(String itemName, int price, int quantity)
 	{
-		TradeEvent trade = createTradeEvent();
-		trade.setItemName(itemName);
-		trade.setOfferType("sell");
-		trade.setPrice(price);
-		trade.setQuantity(quantity);
-		trade.setFilledQuantity(quantity);
-		trade.setRemainingQuantity(0);
-		return trade;
+		return createTradeEvent().toBuilder()
+			.itemName(itemName)
+			.offerType(TradeEvent.OfferType.SELL)
+			.price(price)
+			.quantity(quantity)
+			.filledQuantity(quantity)
+			.remainingQuantity(0)
+			.build();
 	}
 	
 	public static TradeEvent createPartiallyFilledTrade(String itemName, int totalQuantity, int filledQuantity)
 	{
-		TradeEvent trade = createTradeEvent();
-		trade.setItemName(itemName);
-		trade.setQuantity(totalQuantity);
-		trade.setFilledQuantity(filledQuantity);
-		trade.setRemainingQuantity(totalQuantity - filledQuantity);
-		trade.setStatus("pending");
-		return trade;
+		return createTradeEvent().toBuilder()
+			.itemName(itemName)
+			.quantity(totalQuantity)
+			.filledQuantity(filledQuantity)
+			.remainingQuantity(totalQuantity - filledQuantity)
+			.status(TradeEvent.Status.PENDING)
+			.build();
 	}
 	
 	public static TradeEvent createCancelledTrade(String itemName)
 	{
 		TradeEvent trade = createTradeEvent();
-		trade.setItemName(itemName);
-		trade.setStatus("cancelled");
-		trade.setFilledQuantity(0);
-		trade.setRemainingQuantity(trade.getQuantity());
-		return trade;
+		return trade.toBuilder()
+			.itemName(itemName)
+			.status(TradeEvent.Status.CANCELED)
+			.filledQuantity(0)
+			.remainingQuantity(trade.getQuantity())
+			.build();
 	}
 	
 	/**